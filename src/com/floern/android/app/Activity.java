@@ -1,32 +1,466 @@
-/*
- * Floern, dev@floern.com, 2015, MIT Licence
- */
-package com.floern.android.app;
-
-import android.support.v7.app.AppCompatActivity;
-
-/**
- * A subclass of Activity with some additional features.
- * <p>
- * Propagates {@link #onBackPressed()} to Fragments.<br>
- * 
- * @author Floern
- */
-public class Activity extends AppCompatActivity {
-	
-	
-	@Override
-	public void onBackPressed() {
-		// propagate the onBackPressed to Fragments
-		boolean consumed = Fragment.triggerOnBackPressed(getSupportFragmentManager().getFragments());
-		if (consumed) {
-			// event has been consumed by a Fragment, prevent default action
-			return;
-		}
-		
-		// default action
-		super.onBackPressed();
-	}
-	
-	
-}
+/*
+ * Floern, dev@floern.com, 2015, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+
+/**
+ * A subclass of Activity with some additional features.
+ * <p>
+ * Propagates {@link #onBackPressed()} to Fragments.<br>
+ * Hosts a {@link ViewPool} and other {@link ResourcePool}s shared by its Fragments.<br>
+ * Prewarms Fragments during idle time, see {@link #prewarmFragment(int, String, FragmentFactory)}.<br>
+ * Tracks its visible Fragments and attributes janky frames to them, see {@link #setJankMonitorEnabled(boolean)}.<br>
+ * Records main thread stalls, see {@link #setStallWatchdogEnabled(long)}.<br>
+ * Records its lifecycle latencies if the {@link LifecycleTracer} is enabled.<br>
+ * Reports the cold start phases to the {@link StartupProfiler}.<br>
+ * 
+ * @author Floern
+ */
+public class Activity extends AppCompatActivity {
+	
+	/** resource pools by type */
+	private final HashMap<Class<?>, ResourcePool> resourcePools = new HashMap<>();
+	
+	/** set in onDestroy, no resource pools are created afterwards */
+	private boolean resourcePoolsReleased;
+	
+	private final BackPressDispatcher backPressDispatcher = new BackPressDispatcher();
+	
+	private boolean indexedBackDispatch;
+	
+	private FragmentPrewarmer prewarmer;
+	
+	/** true between onResume() and onPause() */
+	private boolean resumed;
+	
+	/** Fragments in the order they got visible */
+	private final ArrayList<Fragment> visibleFragments = new ArrayList<>();
+	
+	private JankMonitor jankMonitor;
+	
+	private StallWatchdog stallWatchdog;
+	
+	/** lifecycle latencies until the first frame, null if not traced */
+	private LifecycleTrace lifecycleTrace;
+	
+	
+	/**
+	 * Creates a Fragment to be prewarmed.
+	 */
+	public interface FragmentFactory {
+		
+		/**
+		 * Create the Fragment.
+		 * @return A new Fragment
+		 */
+		android.support.v4.app.Fragment create();
+		
+	}
+	
+	
+	/**
+	 * Get the pool of inflated layouts shared by the Fragments of this Activity.
+	 * @return The ViewPool, or null if the Activity has been destroyed.
+	 */
+	public ViewPool getViewPool() {
+		return getResourcePool(ViewPool.class);
+	}
+	
+	
+	/**
+	 * Get the pool of Bitmaps shared by the Fragments of this Activity.
+	 * @return The BitmapPool, or null if the Activity has been destroyed.
+	 */
+	public BitmapPool getBitmapPool() {
+		return getResourcePool(BitmapPool.class);
+	}
+	
+	
+	/**
+	 * Get the cache of Paints shared by the Fragments of this Activity.
+	 * @return The PaintCache, or null if the Activity has been destroyed.
+	 */
+	public PaintCache getPaintCache() {
+		return getResourcePool(PaintCache.class);
+	}
+	
+	
+	/**
+	 * Get the cache of text widths shared by the Fragments of this Activity.
+	 * @return The TextMeasureCache, or null if the Activity has been destroyed.
+	 */
+	public TextMeasureCache getTextMeasureCache() {
+		return getResourcePool(TextMeasureCache.class);
+	}
+	
+	
+	/**
+	 * Get a resource pool shared by the Fragments of this Activity. The pool is created with its no-argument 
+	 * constructor on first access, unless one has been set with {@link #setResourcePool(Class, ResourcePool)}.
+	 * Pools are trimmed on memory pressure and cleared when the Activity is destroyed.
+	 * @param type The pool's class
+	 * @return The resource pool, or null if the Activity has been destroyed.
+	 * @throws IllegalArgumentException if the pool cannot be instantiated
+	 */
+	public <T extends ResourcePool> T getResourcePool(Class<T> type) {
+		if (resourcePoolsReleased) {
+			return null;
+		}
+		ResourcePool pool = resourcePools.get(type);
+		if (pool == null) {
+			try {
+				pool = type.newInstance();
+			}
+			catch (InstantiationException | IllegalAccessException e) {
+				throw new IllegalArgumentException(type.getName() + " cannot be instantiated", e);
+			}
+			resourcePools.put(type, pool);
+		}
+		return type.cast(pool);
+	}
+	
+	
+	/**
+	 * Set a resource pool, e.g. one with a custom size. A pool previously set for that type is cleared.
+	 * @param type The pool's class
+	 * @param pool The resource pool
+	 * @throws IllegalStateException if the Activity has been destroyed
+	 */
+	public <T extends ResourcePool> void setResourcePool(Class<T> type, T pool) {
+		if (resourcePoolsReleased) {
+			throw new IllegalStateException("resource pools cannot be set after the Activity has been destroyed");
+		}
+		ResourcePool previous = resourcePools.put(type, pool);
+		if (previous != null && previous != pool) {
+			previous.clear();
+		}
+	}
+	
+	
+	/**
+	 * Enable or disable the indexed back press dispatch. If enabled, only Fragments that registered a handler with 
+	 * {@link Fragment#registerBackPressHandler(int)} receive {@link Fragment#onBackPressed()}, in the order of their 
+	 * priority, instead of scanning the whole Fragment tree.
+	 * @param enabled true to use the indexed dispatch
+	 */
+	public void setIndexedBackDispatch(boolean enabled) {
+		indexedBackDispatch = enabled;
+	}
+	
+	
+	/**
+	 * Check whether the indexed back press dispatch is enabled.
+	 * @return true if the indexed dispatch is used
+	 * @see #setIndexedBackDispatch(boolean)
+	 */
+	public boolean isIndexedBackDispatch() {
+		return indexedBackDispatch;
+	}
+	
+	
+	/**
+	 * Get the dispatcher holding the registered back press handlers.
+	 * @return The BackPressDispatcher
+	 */
+	public BackPressDispatcher getBackPressDispatcher() {
+		return backPressDispatcher;
+	}
+	
+	
+	/**
+	 * Create a Fragment in the hidden state during main thread idle time, so that showing it later only needs to reveal
+	 * the prepared view. Prewarming pauses while the user interacts and stops when the heap budget is exceeded.
+	 * Nothing happens if a Fragment with the given tag already exists.
+	 * @param containerId The container the Fragment is added to
+	 * @param tag The Fragment's tag
+	 * @param factory Creates the Fragment
+	 * @see #showPrewarmedFragment(String)
+	 * @see #setPrewarmHeapBudget(long)
+	 */
+	public void prewarmFragment(int containerId, String tag, FragmentFactory factory) {
+		getPrewarmer().enqueue(containerId, tag, factory);
+	}
+	
+	
+	/**
+	 * Set the maximum used heap size up to which Fragments are prewarmed. Defaults to half of the maximum heap size.
+	 * @param bytes Heap budget in bytes
+	 */
+	public void setPrewarmHeapBudget(long bytes) {
+		getPrewarmer().setMaxHeapUsage(bytes);
+	}
+	
+	
+	/**
+	 * Cancel all pending prewarm requests.
+	 */
+	public void cancelPrewarming() {
+		if (prewarmer != null) {
+			prewarmer.cancel();
+		}
+	}
+	
+	
+	/**
+	 * Show a prewarmed Fragment.
+	 * @param tag The Fragment's tag
+	 * @return true if the Fragment exists and is being shown, false if it has not been prewarmed (yet).
+	 */
+	public boolean showPrewarmedFragment(String tag) {
+		android.support.v4.app.Fragment fragment = getSupportFragmentManager().findFragmentByTag(tag);
+		if (fragment == null) {
+			return false;
+		}
+		if (fragment.isHidden()) {
+			getSupportFragmentManager().beginTransaction().show(fragment).commit();
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * A Fragment of this Activity got visible.
+	 */
+	void onFragmentShown(Fragment fragment) {
+		if (!visibleFragments.contains(fragment)) {
+			visibleFragments.add(fragment);
+		}
+	}
+	
+	
+	/**
+	 * A Fragment of this Activity has been hidden.
+	 */
+	void onFragmentHidden(Fragment fragment) {
+		visibleFragments.remove(fragment);
+	}
+	
+	
+	/**
+	 * Get the {@link Fragment}s that are currently visible, in the order they got visible.
+	 * @return An unmodifiable live list of Fragments
+	 */
+	public List<Fragment> getVisibleFragments() {
+		return Collections.unmodifiableList(visibleFragments);
+	}
+	
+	
+	/**
+	 * Enable or disable the monitoring of frames over budget. Janky frames are attributed to the visible Fragments.
+	 * Monitoring requires API level 16, it is paused while the Activity is not resumed.
+	 * @param enabled true to monitor frames
+	 * @see #getJankMonitor()
+	 */
+	public void setJankMonitorEnabled(boolean enabled) {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+			return;
+		}
+		if (enabled && jankMonitor == null) {
+			jankMonitor = new JankMonitor(visibleFragments);
+			if (resumed) {
+				jankMonitor.start(getRefreshRate());
+			}
+		}
+		else if (!enabled && jankMonitor != null) {
+			jankMonitor.stop();
+			jankMonitor = null;
+		}
+	}
+	
+	
+	/**
+	 * Get the frame monitor with the jank statistics.
+	 * @return The JankMonitor, or null if not enabled.
+	 * @see #setJankMonitorEnabled(boolean)
+	 */
+	public JankMonitor getJankMonitor() {
+		return jankMonitor;
+	}
+	
+	
+	/**
+	 * Enable or disable the main thread stall watchdog. If enabled, main Looper messages running longer than the 
+	 * threshold are recorded with a sample of the main thread's stack and the visible Fragments. The watchdog is 
+	 * shared by all Activities of the process, see {@link StallWatchdog}. It runs until the Activity is destroyed.
+	 * @param thresholdMillis Minimum duration of a recorded message, or a negative value to disable.
+	 * @see #getStallWatchdog()
+	 */
+	public void setStallWatchdogEnabled(long thresholdMillis) {
+		if (thresholdMillis >= 0) {
+			stallWatchdog = StallWatchdog.acquire(visibleFragments, thresholdMillis);
+		}
+		else if (stallWatchdog != null) {
+			StallWatchdog.release(visibleFragments);
+			stallWatchdog = null;
+		}
+	}
+	
+	
+	/**
+	 * Get the stall watchdog with the recorded stalls.
+	 * @return The StallWatchdog, or null if not enabled.
+	 * @see #setStallWatchdogEnabled(long)
+	 */
+	public StallWatchdog getStallWatchdog() {
+		return stallWatchdog;
+	}
+	
+	
+	private float getRefreshRate() {
+		return getWindowManager().getDefaultDisplay().getRefreshRate();
+	}
+	
+	
+	private FragmentPrewarmer getPrewarmer() {
+		if (prewarmer == null) {
+			prewarmer = new FragmentPrewarmer(this);
+			if (resumed) {
+				prewarmer.onResume();
+			}
+		}
+		return prewarmer;
+	}
+	
+	
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		StartupProfiler.onActivityCreate(this);
+		lifecycleTrace = LifecycleTrace.start(this, LifecycleTrace.ACTIVITY_MILESTONES);
+		if (lifecycleTrace != null) {
+			lifecycleTrace.mark(LifecycleTrace.ACTIVITY_CREATE);
+		}
+		super.onCreate(savedInstanceState);
+	}
+	
+	
+	@Override
+	protected void onStart() {
+		StartupProfiler.onActivityStart(this);
+		if (lifecycleTrace != null) {
+			lifecycleTrace.mark(LifecycleTrace.ACTIVITY_START);
+		}
+		super.onStart();
+	}
+	
+	
+	@Override
+	public boolean dispatchTouchEvent(MotionEvent event) {
+		if (prewarmer != null) {
+			prewarmer.onInput();
+		}
+		return super.dispatchTouchEvent(event);
+	}
+	
+	
+	@Override
+	public boolean dispatchKeyEvent(KeyEvent event) {
+		if (prewarmer != null) {
+			prewarmer.onInput();
+		}
+		return super.dispatchKeyEvent(event);
+	}
+	
+	
+	@Override
+	protected void onResume() {
+		StartupProfiler.onActivityResume(this);
+		if (lifecycleTrace != null && !lifecycleTrace.isFinished()) {
+			lifecycleTrace.mark(LifecycleTrace.ACTIVITY_RESUME);
+			lifecycleTrace.markFirstFrame(getWindow().getDecorView());
+		}
+		super.onResume();
+		resumed = true;
+		
+		if (prewarmer != null) {
+			prewarmer.onResume();
+		}
+		if (jankMonitor != null) {
+			jankMonitor.start(getRefreshRate());
+		}
+	}
+	
+	
+	@Override
+	protected void onPause() {
+		super.onPause();
+		resumed = false;
+		
+		if (prewarmer != null) {
+			prewarmer.onPause();
+		}
+		if (jankMonitor != null) {
+			jankMonitor.stop();
+		}
+	}
+	
+	
+	@Override
+	protected void onSaveInstanceState(Bundle outState) {
+		super.onSaveInstanceState(outState);
+		
+		// the saved state includes the state and arguments of all Fragments
+		if (outState.hasFileDescriptors()) {
+			throw new IllegalStateException("saved state of " + getClass().getName() + " must not contain file "
+					+ "descriptors, e.g. spilled values of a BundleBuilder");
+		}
+	}
+	
+	
+	@Override
+	public void onBackPressed() {
+		// propagate the onBackPressed to Fragments
+		boolean consumed = indexedBackDispatch 
+				? backPressDispatcher.dispatch() 
+				: Fragment.triggerOnBackPressed(getSupportFragmentManager().getFragments());
+		if (consumed) {
+			// event has been consumed by a Fragment, prevent default action
+			return;
+		}
+		
+		// default action
+		super.onBackPressed();
+	}
+	
+	
+	@Override
+	public void onTrimMemory(int level) {
+		super.onTrimMemory(level);
+		
+		for (ResourcePool pool : resourcePools.values()) {
+			pool.trim(level);
+		}
+	}
+	
+	
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		
+		for (ResourcePool pool : resourcePools.values()) {
+			pool.clear();
+		}
+		resourcePools.clear();
+		resourcePoolsReleased = true;
+		if (lifecycleTrace != null) {
+			lifecycleTrace.cancel();
+		}
+		if (stallWatchdog != null) {
+			StallWatchdog.release(visibleFragments);
+			stallWatchdog = null;
+		}
+		StartupProfiler.onActivityDestroy(this);
+	}
+	
+	
+}
@@ -0,0 +1,65 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import android.os.Bundle;
+
+import com.floern.android.util.ArgumentKey;
+
+import java.util.Arrays;
+
+/**
+ * Holds the decoded values of typed Fragment arguments, indexed by {@link ArgumentKey#getIndex()}.
+ * 
+ * @author Floern
+ */
+final class ArgumentCache {
+	
+	private static final Object UNSET = new Object();
+	
+	private Object[] values = new Object[0];
+	
+	
+	/**
+	 * Get the decoded value of a key, decoding it from the arguments on first access.
+	 * @param key ArgumentKey
+	 * @param arguments The Fragment's arguments, or null
+	 * @return The value
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T get(ArgumentKey<T> key, Bundle arguments) {
+		int index = key.getIndex();
+		if (index < values.length && values[index] != UNSET) {
+			return (T) values[index];
+		}
+		T value = key.read(arguments != null ? arguments : Bundle.EMPTY);
+		set(key, value);
+		return value;
+	}
+	
+	
+	/**
+	 * Set the decoded value of a key.
+	 * @param key ArgumentKey
+	 * @param value The value
+	 */
+	<T> void set(ArgumentKey<T> key, T value) {
+		int index = key.getIndex();
+		if (index >= values.length) {
+			int oldLength = values.length;
+			values = Arrays.copyOf(values, Math.max(index + 1, 2 * oldLength));
+			Arrays.fill(values, oldLength, values.length, UNSET);
+		}
+		values[index] = value;
+	}
+	
+	
+	/**
+	 * Discard all decoded values.
+	 */
+	void clear() {
+		Arrays.fill(values, UNSET);
+	}
+	
+}
@@ -0,0 +1,109 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.ArrayList;
+
+/**
+ * Dispatches back presses to registered Fragments, ordered by priority, then by registration time (most recent first).
+ * <p>
+ * Fragments register while they are visible, so the dispatch cost depends on the number of handlers only, not on the
+ * number of Fragments in the hierarchy.
+ * 
+ * @author Floern
+ * @see Activity#setIndexedBackDispatch(boolean)
+ * @see Fragment#registerBackPressHandler(int)
+ */
+public class BackPressDispatcher {
+	
+	private static final class Handler {
+		final Fragment fragment;
+		final int priority;
+		final long sequence;
+		
+		Handler(Fragment fragment, int priority, long sequence) {
+			this.fragment = fragment;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+		
+		/** true if this handler is invoked before the other one */
+		boolean precedes(Handler other) {
+			return priority != other.priority ? priority > other.priority : sequence > other.sequence;
+		}
+	}
+	
+	/** registered handlers in dispatch order */
+	private final ArrayList<Handler> handlers = new ArrayList<>();
+	
+	private long nextSequence;
+	
+	
+	/**
+	 * Register a Fragment's back press handler, replacing a previous registration of the same Fragment.
+	 * @param fragment The Fragment
+	 * @param priority Handlers with a higher priority are invoked first.
+	 */
+	void register(Fragment fragment, int priority) {
+		unregister(fragment);
+		Handler handler = new Handler(fragment, priority, nextSequence++);
+		
+		// binary search for the insertion point
+		int low = 0;
+		int high = handlers.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (handlers.get(mid).precedes(handler)) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		handlers.add(low, handler);
+	}
+	
+	
+	/**
+	 * Unregister a Fragment's back press handler.
+	 * @param fragment The Fragment
+	 */
+	void unregister(Fragment fragment) {
+		for (int i = 0; i < handlers.size(); ++i) {
+			if (handlers.get(i).fragment == fragment) {
+				handlers.remove(i);
+				return;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Invoke the registered handlers in order until one consumes the event.
+	 * @return true if the event has been consumed, false otherwise.
+	 */
+	public boolean dispatch() {
+		if (handlers.isEmpty()) {
+			return false;
+		}
+		// handlers may unregister while being invoked
+		Handler[] snapshot = handlers.toArray(new Handler[handlers.size()]);
+		for (Handler handler : snapshot) {
+			if (handler.fragment.onBackPressed()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * Get the number of registered handlers.
+	 * @return Number of handlers
+	 */
+	public int getHandlerCount() {
+		return handlers.size();
+	}
+	
+}
@@ -0,0 +1,162 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.ArrayList;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/**
+ * A size-bounded pool of mutable Bitmaps, to reuse their memory for decoding with 
+ * {@link com.floern.android.util.BitmapFactoryOptionsBuilder#setBitmap(Bitmap)} or for drawing.
+ * <p>
+ * Bitmaps are handed out for an exact match of width, height and config, which is what decoding into a reused Bitmap 
+ * requires below API level 19. The least recently released Bitmaps are evicted first.
+ * <p>
+ * The pool is thread-safe, Bitmaps may be acquired and released by background decoding threads.
+ * 
+ * @author Floern
+ * @see Activity#getBitmapPool()
+ */
+public class BitmapPool implements ResourcePool {
+	
+	public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+	
+	/** pooled Bitmaps, least recently released first */
+	private final ArrayList<Bitmap> pool = new ArrayList<>();
+	
+	private final long maxBytes;
+	
+	private long bytes;
+	
+	
+	/**
+	 * Create a BitmapPool with the default size.
+	 */
+	public BitmapPool() {
+		this(DEFAULT_MAX_BYTES);
+	}
+	
+	
+	/**
+	 * Create a BitmapPool.
+	 * @param maxBytes Maximum size of the pooled Bitmaps in bytes
+	 */
+	public BitmapPool(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+	
+	
+	/**
+	 * Take a Bitmap out of the pool. Its content is undefined.
+	 * @param width Width in pixels
+	 * @param height Height in pixels
+	 * @param config Bitmap config
+	 * @return A Bitmap, or null if there is no matching Bitmap in the pool.
+	 */
+	public synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+		for (int i = pool.size() - 1; i >= 0; --i) {
+			Bitmap bitmap = pool.get(i);
+			if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+				pool.remove(i);
+				bytes -= getByteCount(bitmap);
+				return bitmap;
+			}
+		}
+		return null;
+	}
+	
+	
+	/**
+	 * Take a Bitmap out of the pool, or create a new one if there is no matching Bitmap.
+	 * @param width Width in pixels
+	 * @param height Height in pixels
+	 * @param config Bitmap config
+	 * @return A mutable Bitmap, erased if it has been pooled.
+	 */
+	public Bitmap acquireOrCreate(int width, int height, Bitmap.Config config) {
+		Bitmap bitmap = acquire(width, height, config);
+		if (bitmap == null) {
+			return Bitmap.createBitmap(width, height, config);
+		}
+		bitmap.eraseColor(0);
+		return bitmap;
+	}
+	
+	
+	/**
+	 * Put a Bitmap into the pool. Immutable and recycled Bitmaps are not pooled.
+	 * @param bitmap The Bitmap, must not be used by the caller anymore.
+	 * @return true if the Bitmap has been pooled, false if it cannot be reused or is larger than the pool.
+	 */
+	public synchronized boolean release(Bitmap bitmap) {
+		if (!bitmap.isMutable() || bitmap.isRecycled()) {
+			return false;
+		}
+		long byteCount = getByteCount(bitmap);
+		if (byteCount > maxBytes) {
+			return false;
+		}
+		pool.add(bitmap);
+		bytes += byteCount;
+		evict(maxBytes);
+		return true;
+	}
+	
+	
+	private static long getByteCount(Bitmap bitmap) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			return getAllocationByteCount(bitmap);
+		}
+		return (long) bitmap.getRowBytes() * bitmap.getHeight();
+	}
+	
+	
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	private static long getAllocationByteCount(Bitmap bitmap) {
+		return bitmap.getAllocationByteCount();
+	}
+	
+	
+	/**
+	 * Evict the least recently released Bitmaps until the pool fits the given size.
+	 */
+	private void evict(long targetBytes) {
+		while (bytes > targetBytes && !pool.isEmpty()) {
+			bytes -= getByteCount(pool.remove(0));
+		}
+	}
+	
+	
+	@Override
+	public synchronized void trim(int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			clear();
+		}
+		else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+			evict(maxBytes / 2);
+		}
+	}
+	
+	
+	@Override
+	public synchronized void clear() {
+		// the Bitmaps are not recycled, they may still be referenced by a pending draw
+		pool.clear();
+		bytes = 0;
+	}
+	
+	
+	/**
+	 * Get the size of the pooled Bitmaps.
+	 * @return Size in bytes
+	 */
+	public synchronized long getSizeBytes() {
+		return bytes;
+	}
+	
+}
@@ -1,264 +1,980 @@
-/*
- * Floern, dev@floern.com, 2015, MIT Licence
- */
-package com.floern.android.app;
-
-import java.util.List;
-
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.AbsListView;
-import android.widget.EditText;
-import android.widget.ImageView;
-import android.widget.TextView;
-
-/**
- * A subclass of Fragment with some additional features.
- * <p>
- * {@link #getLayoutInflater()} - Get a LayoutInflater instance.<br>
- * {@link #findViewById(int)} - Look for a child view with the given ID.<br>
- * {@link #findImageViewById(int)} - Look for a child ImageView with the given ID.<br>
- * {@link #findTextViewById(int)} - Look for a child TextView with the given ID.<br>
- * {@link #findEditTextById(int)} - Look for a child EditText with the given ID.<br>
- * {@link #findViewGroupById(int)} - Look for a child ViewGroup with the given ID.<br>
- * {@link #findAbsListViewById(int)} - Look for a child AbsListView with the given ID.<br>
- * {@link #onShow()} - The Fragment has been created or got visible.<br>
- * {@link #onHide()} - The Fragment has been hidden or removed.<br>
- * {@link #onBackPressed()} - The User pressed the back button.<br>
- * {@link #overrideArgument(String, String)} - Override a Fragment's String argument.<br>
- * {@link #overrideArgument(String, int)} - Override a Fragment's int argument.<br>
- * {@link #overrideArgument(String, long)} - Override a Fragment's long argument.<br>
- * {@link #overrideArgument(String, boolean)} - Override a Fragment's boolean argument.<br>
- * <p>
- * Propagates {@link #onHiddenChanged(boolean)} to child Fragments.<br>
- * Propagates {@link #onBackPressed()} to child Fragments.<br>
- * 
- * @author Floern
- */
-public class Fragment extends android.support.v4.app.Fragment {
-	
-	
-	/**
-	 * Get the Activity's LayoutInflater instance.
-	 * @return
-	 */
-	public LayoutInflater getLayoutInflater() {
-		return getActivity().getLayoutInflater();
-	}
-	
-	
-	/**
-	 * Look for a child view with the given ID.
-	 * @param id The ID to search for.
-	 * @return The view that has the given ID in the hierarchy or null.
-	 */
-	public View findViewById(int id) {
-		return getView().findViewById(id);
-	}
-	
-	
-	/**
-	 * Look for a child ImageView with the given ID.
-	 * @param id The ID to search for.
-	 * @return The ImageView that has the given ID in the hierarchy or null.
-	 */
-	public ImageView findImageViewById(int id) {
-		return (ImageView) getView().findViewById(id);
-	}
-	
-	
-	/**
-	 * Look for a child TextView with the given ID.
-	 * @param id The ID to search for.
-	 * @return The TextView that has the given ID in the hierarchy or null.
-	 */
-	public TextView findTextViewById(int id) {
-		return (TextView) getView().findViewById(id);
-	}
-	
-	
-	/**
-	 * Look for a child EditText with the given ID.
-	 * @param id The ID to search for.
-	 * @return The EditText that has the given ID in the hierarchy or null.
-	 */
-	public EditText findEditTextById(int id) {
-		return (EditText) getView().findViewById(id);
-	}
-	
-	
-	/**
-	 * Look for a child ViewGroup with the given ID.
-	 * @param id The ID to search for.
-	 * @return The ViewGroup that has the given ID in the hierarchy or null.
-	 */
-	public ViewGroup findViewGroupById(int id) {
-		return (ViewGroup) getView().findViewById(id);
-	}
-
-	
-	/**
-	 * Look for a child AbsListView with the given ID.
-	 * @param id The ID to search for.
-	 * @return The AbsListView that has the given ID in the hierarchy or null.
-	 */
-	public AbsListView findAbsListViewById(int id) {
-		return (AbsListView) getView().findViewById(id);
-	}
-
-	
-	@Override
-	public void onStart() {
-		super.onStart();
-
-		// invoke visibility callback method
-		if (!isHidden()) {
-			onShow();
-		}
-	}
-	
-	
-	@Override
-	public void onStop() {
-		super.onStop();
-
-		// invoke visibility callback method
-		if (!isHidden()) {
-			onHide();
-		}
-	}
-	
-	
-	@Override
-	final public void onHiddenChanged(boolean hidden) {
-		super.onHiddenChanged(hidden);
-		
-		// invoke visibility callback method
-		if (!hidden) {
-			onShow();
-		}
-		else {
-			onHide();
-		}
-
-		// propagate the hidden state change down to child Fragments
-		List<android.support.v4.app.Fragment> childFragments = getChildFragmentManager().getFragments();
-		if (childFragments != null) {
-			for (android.support.v4.app.Fragment childFragment : childFragments) {
-				if (childFragment != null) {
-					childFragment.onHiddenChanged(hidden);
-				}
-			}
-		}
-	}
-	
-
-	/**
-	 * The Fragment (or the Activity) got visible.<br>
-	 * May be overridden by a subclass.
-	 */
-	public void onShow() {
-		// to be overidden
-	}
-	
-	
-	/**
-	 * The Fragment (or the Activity) has been hidden.<br>
-	 * May be overridden by a subclass.
-	 */
-	public void onHide() {
-		// to be overidden
-	}
-	
-	
-	/**
-	 * Called when the Activity has detected the user's press of the back key.<br>
-	 * It's recommended only to do something (i.e. handle the event) if the super implementation returns false. 
-	 * @return true if the event has been consumed, false otherwise.
-	 */
-	protected boolean onBackPressed() {
-		// propagate the onBackPressed to child Fragments
-		return triggerOnBackPressed(getChildFragmentManager().getFragments());
-	}
-	
-	
-	/**
-	 * Interate a list of active Fragments and invoke their {@link #onBackPressed()} event callback.
-	 * @param fragments
-	 * @return true if a Fragment consumed the event, false otherwise.
-	 */
-	protected static boolean triggerOnBackPressed(List<android.support.v4.app.Fragment> fragments) {
-		if (fragments == null) {
-			return false;
-		}
-		
-		// iterate visible Fragments
-		for (android.support.v4.app.Fragment fragment : fragments) {
-			if (fragment instanceof Fragment && fragment.isVisible()) {
-				boolean consumed = ((Fragment)fragment).onBackPressed();
-				if (consumed) return true;
-			}
-		}
-		
-		return false;
-	}
-	
-	
-	/**
-	 * Override a String argument of the Fragment.
-	 * @param key Argument key
-	 * @param value Argument String value
-	 * @see #getArguments()
-	 */
-	public void overrideArgument(String key, String value) {
-		getArguments().putString(key, value);
-	}
-	
-	
-	/**
-	 * Override a integer argument of the Fragment.
-	 * @param key Argument key
-	 * @param value Argument integer value
-	 * @see #getArguments()
-	 */
-	public void overrideArgument(String key, int value) {
-		getArguments().putInt(key, value);
-	}
-	
-	
-	/**
-	 * Override a long argument of the Fragment.
-	 * @param key Argument key
-	 * @param value Argument long value
-	 * @see #getArguments()
-	 */
-	public void overrideArgument(String key, long value) {
-		getArguments().putLong(key, value);
-	}
-	
-	
-	/**
-	 * Override a boolean argument of the Fragment.
-	 * @param key Argument key
-	 * @param value Argument boolean value
-	 * @see #getArguments()
-	 */
-	public void overrideArgument(String key, boolean value) {
-		getArguments().putBoolean(key, value);
-	}
-
-
-	/**
-	 * Find the Fragment that is directly attached to the Activity.
-	 * @return Top level Fragment
-	 */
-	public android.support.v4.app.Fragment getTopLevelFragment() {
-		android.support.v4.app.Fragment fragment = this;
-		while (fragment.getParentFragment() != null) {
-			fragment = fragment.getParentFragment();
-		}
-		return fragment;
-	}
-	
-}
+/*
+ * Floern, dev@floern.com, 2015, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.support.v4.view.AsyncLayoutInflater;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.floern.android.util.ArgumentKey;
+import com.floern.android.util.BundleBuilder;
+import com.floern.android.util.BundleSnapshot;
+import com.floern.android.util.FrozenBundle;
+
+/**
+ * A subclass of Fragment with some additional features.
+ * <p>
+ * {@link #getLayoutInflater()} - Get a LayoutInflater instance.<br>
+ * {@link #findViewById(int)} - Look for a child view with the given ID, cached until the view is destroyed.<br>
+ * {@link #findImageViewById(int)} - Look for a child ImageView with the given ID.<br>
+ * {@link #findTextViewById(int)} - Look for a child TextView with the given ID.<br>
+ * {@link #findEditTextById(int)} - Look for a child EditText with the given ID.<br>
+ * {@link #findViewGroupById(int)} - Look for a child ViewGroup with the given ID.<br>
+ * {@link #findAbsListViewById(int)} - Look for a child AbsListView with the given ID.<br>
+ * {@link #inflateRecycled(int, ViewGroup)} - Inflate a layout or reuse one of the Activity's pool.<br>
+ * {@link #inflateAsync(int)} - Inflate a layout off the main thread.<br>
+ * {@link #inflateDeferred(int)} - Inflate a layout when the Fragment is shown for the first time.<br>
+ * {@link #getResourcePool(Class)} - Get a resource pool shared by the Fragments of the Activity.<br>
+ * {@link #onShow()} - The Fragment has been created or got visible.<br>
+ * {@link #onHide()} - The Fragment has been hidden or removed.<br>
+ * {@link #getVisibilityScheduler()} - Schedule work that only runs while the Fragment is visible.<br>
+ * {@link #onSaveLargeState(BundleBuilder)} - Save large state, serialized to disk in the background.<br>
+ * {@link #onBackPressed()} - The User pressed the back button.<br>
+ * {@link #registerBackPressHandler(int)} - Register for the indexed back press dispatch of the Activity.<br>
+ * {@link #getArgument(ArgumentKey)} - Get a typed argument, decoded only once.<br>
+ * {@link #overrideArgument(ArgumentKey, Object)} - Override a Fragment's typed argument.<br>
+ * {@link #overrideArgument(String, String)} - Override a Fragment's String argument.<br>
+ * {@link #overrideArgument(String, int)} - Override a Fragment's int argument.<br>
+ * {@link #overrideArgument(String, long)} - Override a Fragment's long argument.<br>
+ * {@link #overrideArgument(String, boolean)} - Override a Fragment's boolean argument.<br>
+ * <p>
+ * Propagates {@link #onHiddenChanged(boolean)} to child Fragments whose effective visibility changes by a change of 
+ * the hidden state.<br>
+ * Propagates {@link #onBackPressed()} to child Fragments.<br>
+ * Records its lifecycle latencies if the {@link LifecycleTracer} is enabled.<br>
+ * 
+ * @author Floern
+ */
+public class Fragment extends android.support.v4.app.Fragment {
+	
+	private static final String KEY_LARGE_STATE_FILE = "com.floern.android.app.Fragment.largeStateFile";
+	
+	private static final String LARGE_STATE_DIRECTORY = "fragment-state";
+	
+	private ArgumentCache argumentCache;
+	
+	/** views found by ID, cleared on {@link #onDestroyView()} */
+	private final SparseArray<View> viewCache = new SparseArray<>();
+	
+	private View viewCacheRoot;
+	
+	private boolean viewCacheIndexed;
+	
+	private boolean eagerViewIndexing;
+	
+	/** placeholder of an asynchronously or deferred inflated layout */
+	private FrameLayout layoutPlaceholder;
+	
+	/** layout to inflate on first show, 0 if none */
+	private int deferredLayoutResId;
+	
+	private boolean layoutInflated;
+	
+	/** view to return to the Activity's ViewPool, null if none */
+	private View recycledView;
+	
+	private int recycledLayoutResId;
+	
+	/** true between onShow() and onHide() */
+	private boolean shown;
+	
+	private VisibilityScheduler visibilityScheduler;
+	
+	private boolean backPressHandlerEnabled;
+	
+	private int backPressPriority;
+	
+	/** true between onStart() and onStop() */
+	private boolean started;
+	
+	/** parent in the Fragment tree index, null if it's not a {@link Fragment} */
+	private Fragment parentIndex;
+	
+	/** attached child Fragments in the Fragment tree index */
+	private final ArrayList<Fragment> childIndex = new ArrayList<>();
+	
+	/** child Fragments that are not a {@link Fragment}, collected without creating a child FragmentManager */
+	private final ArrayList<android.support.v4.app.Fragment> otherChildren = new ArrayList<>();
+	
+	/** cached while attached */
+	private android.support.v4.app.Fragment topLevelFragment;
+	
+	private HiddenViewDetacher hiddenViewDetacher;
+	
+	/** file of the last saved or restored large state */
+	private File largeStateFile;
+	
+	private Future<BundleSnapshot> largeState;
+	
+	/** lifecycle latencies until the first frame, null if not traced */
+	private LifecycleTrace lifecycleTrace;
+	
+	
+	/**
+	 * Get the Activity's LayoutInflater instance.
+	 * @return
+	 */
+	public LayoutInflater getLayoutInflater() {
+		return getActivity().getLayoutInflater();
+	}
+	
+	
+	/**
+	 * Look for a child view with the given ID.
+	 * Found views are cached until the view is destroyed or {@link #invalidateViewCache()} is called.
+	 * @param id The ID to search for.
+	 * @return The view that has the given ID in the hierarchy or null.
+	 */
+	public View findViewById(int id) {
+		View root = getView();
+		if (root != viewCacheRoot) {
+			// view hierarchy has been replaced
+			invalidateViewCache();
+			viewCacheRoot = root;
+		}
+		
+		View view = viewCache.get(id);
+		if (view == null) {
+			if (eagerViewIndexing && !viewCacheIndexed) {
+				indexViews(root);
+				viewCacheIndexed = true;
+				view = viewCache.get(id);
+			}
+			if (view == null) {
+				view = root.findViewById(id);
+				if (view != null) {
+					viewCache.put(id, view);
+				}
+			}
+		}
+		return view;
+	}
+	
+	
+	/**
+	 * Index all views with an ID of a view hierarchy in a single traversal.
+	 * The first view in depth-first order wins, like in {@link View#findViewById(int)}.
+	 * @param view Root of the view hierarchy
+	 */
+	private void indexViews(View view) {
+		int id = view.getId();
+		if (id != View.NO_ID && viewCache.get(id) == null) {
+			viewCache.put(id, view);
+		}
+		if (view instanceof ViewGroup) {
+			ViewGroup group = (ViewGroup) view;
+			for (int i = 0, count = group.getChildCount(); i < count; ++i) {
+				indexViews(group.getChildAt(i));
+			}
+		}
+	}
+	
+	
+	/**
+	 * Enable or disable the eager view indexing. If enabled, the first lookup indexes all views of the layout in a 
+	 * single traversal, instead of walking the view tree for every new ID.
+	 * @param eager true to index the whole layout on first lookup
+	 */
+	public void setEagerViewIndexing(boolean eager) {
+		eagerViewIndexing = eager;
+	}
+	
+	
+	/**
+	 * Discard the cached views of {@link #findViewById(int)} and the typed helpers.
+	 * Must be called if views with an ID are removed from or replaced in the layout.
+	 */
+	public void invalidateViewCache() {
+		viewCache.clear();
+		viewCacheIndexed = false;
+	}
+	
+	
+	/**
+	 * Look for a child ImageView with the given ID.
+	 * @param id The ID to search for.
+	 * @return The ImageView that has the given ID in the hierarchy or null.
+	 */
+	public ImageView findImageViewById(int id) {
+		return (ImageView) findViewById(id);
+	}
+	
+	
+	/**
+	 * Look for a child TextView with the given ID.
+	 * @param id The ID to search for.
+	 * @return The TextView that has the given ID in the hierarchy or null.
+	 */
+	public TextView findTextViewById(int id) {
+		return (TextView) findViewById(id);
+	}
+	
+	
+	/**
+	 * Look for a child EditText with the given ID.
+	 * @param id The ID to search for.
+	 * @return The EditText that has the given ID in the hierarchy or null.
+	 */
+	public EditText findEditTextById(int id) {
+		return (EditText) findViewById(id);
+	}
+	
+	
+	/**
+	 * Look for a child ViewGroup with the given ID.
+	 * @param id The ID to search for.
+	 * @return The ViewGroup that has the given ID in the hierarchy or null.
+	 */
+	public ViewGroup findViewGroupById(int id) {
+		return (ViewGroup) findViewById(id);
+	}
+
+	
+	/**
+	 * Look for a child AbsListView with the given ID.
+	 * @param id The ID to search for.
+	 * @return The AbsListView that has the given ID in the hierarchy or null.
+	 */
+	public AbsListView findAbsListViewById(int id) {
+		return (AbsListView) findViewById(id);
+	}
+
+	
+	/**
+	 * Inflate a layout, reusing a view of the Activity's {@link ViewPool} if available. To be used in 
+	 * {@link #onCreateView(LayoutInflater, ViewGroup, Bundle)}. The view is returned to the pool on
+	 * {@link #onDestroyView()}, after being reset by {@link #onRecycleView(View)}.<br>
+	 * Falls back to a regular inflation if the Fragment is not hosted by a {@link Activity}.
+	 * @param layoutResId Layout resource ID
+	 * @param container The parent view passed to onCreateView
+	 * @return The view to return from onCreateView
+	 */
+	protected View inflateRecycled(int layoutResId, ViewGroup container) {
+		View view = null;
+		ViewPool viewPool = getResourcePool(ViewPool.class);
+		if (viewPool != null) {
+			view = viewPool.acquire(layoutResId);
+		}
+		if (view == null) {
+			view = getLayoutInflater().inflate(layoutResId, container, false);
+		}
+		recycledLayoutResId = layoutResId;
+		recycledView = view;
+		return view;
+	}
+	
+	
+	/**
+	 * A view inflated by {@link #inflateRecycled(int, ViewGroup)} is about to be returned to the pool.
+	 * Reset any state that must not leak into another Fragment, e.g. listeners, adapters and text.<br>
+	 * May be overridden by a subclass.
+	 * @param view The view to reset
+	 * @return true if the view can be reused, false to discard it.
+	 */
+	protected boolean onRecycleView(View view) {
+		return true;
+	}
+	
+	
+	/**
+	 * Inflate a layout off the main thread. To be used in {@link #onCreateView(LayoutInflater, ViewGroup, Bundle)}: 
+	 * returns a lightweight placeholder, the inflated layout is added to it and passed to 
+	 * {@link #onLayoutInflated(View)} on the main thread as soon as it's ready.<br>
+	 * The layout's views must support inflation off the main thread, i.e. must not create a Handler.
+	 * @param layoutResId Layout resource ID
+	 * @return The placeholder view to return from onCreateView
+	 */
+	protected View inflateAsync(int layoutResId) {
+		final FrameLayout placeholder = createLayoutPlaceholder();
+		new AsyncLayoutInflater(getActivity()).inflate(layoutResId, placeholder, 
+				new AsyncLayoutInflater.OnInflateFinishedListener() {
+			@Override
+			public void onInflateFinished(View view, int resid, ViewGroup parent) {
+				// discard the layout if the view has been destroyed in the meantime
+				if (layoutPlaceholder == placeholder) {
+					attachInflatedLayout(view);
+				}
+			}
+		});
+		return placeholder;
+	}
+	
+	
+	/**
+	 * Defer the inflation of a layout until the Fragment is shown for the first time. To be used in 
+	 * {@link #onCreateView(LayoutInflater, ViewGroup, Bundle)}: returns a lightweight placeholder, the inflated layout
+	 * is added to it and passed to {@link #onLayoutInflated(View)} right before the first {@link #onShow()}.
+	 * @param layoutResId Layout resource ID
+	 * @return The placeholder view to return from onCreateView
+	 */
+	protected View inflateDeferred(int layoutResId) {
+		View placeholder = createLayoutPlaceholder();
+		deferredLayoutResId = layoutResId;
+		return placeholder;
+	}
+	
+	
+	private FrameLayout createLayoutPlaceholder() {
+		FrameLayout placeholder = new FrameLayout(getActivity());
+		placeholder.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 
+				ViewGroup.LayoutParams.MATCH_PARENT));
+		layoutPlaceholder = placeholder;
+		deferredLayoutResId = 0;
+		layoutInflated = false;
+		return placeholder;
+	}
+	
+	
+	private void attachInflatedLayout(View view) {
+		layoutPlaceholder.addView(view);
+		layoutInflated = true;
+		invalidateViewCache();
+		onLayoutInflated(view);
+	}
+	
+	
+	/**
+	 * The layout requested by {@link #inflateAsync(int)} or {@link #inflateDeferred(int)} has 
+	 * been inflated and attached.<br>
+	 * May be overridden by a subclass.
+	 * @param view The inflated layout
+	 */
+	protected void onLayoutInflated(View view) {
+		// to be overidden
+	}
+	
+	
+	/**
+	 * Check whether the layout requested by {@link #inflateAsync(int)} or 
+	 * {@link #inflateDeferred(int)} has been inflated.
+	 * @return true if the layout is ready, false if the placeholder is still empty.
+	 */
+	public boolean isLayoutInflated() {
+		return layoutInflated;
+	}
+	
+	
+	@Override
+	public void onDestroyView() {
+		super.onDestroyView();
+		
+		if (lifecycleTrace != null) {
+			lifecycleTrace.cancel();
+		}
+		
+		if (hiddenViewDetacher != null) {
+			hiddenViewDetacher.onViewDestroyed();
+		}
+		
+		if (recycledView != null) {
+			ViewPool viewPool = getResourcePool(ViewPool.class);
+			if (viewPool != null && !getActivity().isFinishing() && onRecycleView(recycledView)) {
+				viewPool.release(recycledLayoutResId, recycledView);
+			}
+			recycledView = null;
+		}
+		invalidateViewCache();
+		viewCacheRoot = null;
+		layoutPlaceholder = null;
+		deferredLayoutResId = 0;
+		layoutInflated = false;
+	}
+	
+	
+	@Override
+	public void onAttach(Context context) {
+		if (lifecycleTrace != null) {
+			lifecycleTrace.cancel();
+		}
+		lifecycleTrace = LifecycleTrace.start(this, LifecycleTrace.FRAGMENT_MILESTONES);
+		markLifecycle(LifecycleTrace.FRAGMENT_ATTACH);
+		super.onAttach(context);
+		
+		// register in the Fragment tree index
+		android.support.v4.app.Fragment parent = getParentFragment();
+		if (parent instanceof Fragment) {
+			parentIndex = (Fragment) parent;
+			parentIndex.childIndex.add(this);
+			topLevelFragment = parentIndex.getTopLevelFragment();
+		}
+		else if (parent != null) {
+			topLevelFragment = findTopLevelFragment(parent);
+		}
+		else {
+			topLevelFragment = this;
+		}
+	}
+	
+	
+	@Override
+	public void onDetach() {
+		super.onDetach();
+		
+		// unregister from the Fragment tree index
+		if (parentIndex != null) {
+			parentIndex.childIndex.remove(this);
+			parentIndex = null;
+		}
+		topLevelFragment = null;
+		otherChildren.clear();
+		
+		if (lifecycleTrace != null) {
+			lifecycleTrace.cancel();
+			lifecycleTrace = null;
+		}
+	}
+	
+	
+	@Override
+	public void onStart() {
+		markLifecycle(LifecycleTrace.FRAGMENT_START);
+		super.onStart();
+		
+		// invoke visibility callback method
+		started = true;
+		updateVisibility(false);
+	}
+	
+	
+	@Override
+	public void onStop() {
+		super.onStop();
+		
+		// invoke visibility callback method
+		started = false;
+		updateVisibility(false);
+	}
+	
+	
+	@Override
+	final public void onHiddenChanged(boolean hidden) {
+		super.onHiddenChanged(hidden);
+		
+		// invoke visibility callback method
+		updateVisibility(true);
+	}
+	
+	
+	/**
+	 * Compute the effective visibility of this Fragment from its own state and its parent's visibility. If it changed,
+	 * invoke the visibility callback method and propagate the change down to the child Fragments.
+	 * @param hiddenChanged true if caused by a change of the hidden state, which is propagated to child Fragments that 
+	 * are not a {@link Fragment}.
+	 */
+	private void updateVisibility(boolean hiddenChanged) {
+		boolean visible = started && !isHidden() && (parentIndex == null || parentIndex.shown);
+		if (visible == shown) {
+			// subtree is not affected
+			return;
+		}
+		
+		if (visible) {
+			dispatchShow();
+		}
+		else {
+			dispatchHide();
+		}
+		
+		// propagate the visibility change down to indexed child Fragments
+		if (!childIndex.isEmpty()) {
+			Fragment[] children = childIndex.toArray(new Fragment[childIndex.size()]);
+			for (Fragment child : children) {
+				child.updateVisibility(hiddenChanged);
+			}
+		}
+		
+		// propagate the hidden state change down to other child Fragments
+		if (hiddenChanged && !otherChildren.isEmpty()) {
+			android.support.v4.app.Fragment[] children = 
+					otherChildren.toArray(new android.support.v4.app.Fragment[otherChildren.size()]);
+			for (android.support.v4.app.Fragment child : children) {
+				if (child.getParentFragment() != this || !child.isAdded()) {
+					// removed since it has been attached
+					otherChildren.remove(child);
+				}
+				else {
+					child.onHiddenChanged(!visible);
+				}
+			}
+		}
+	}
+	
+	
+	@Override
+	public void onAttachFragment(android.support.v4.app.Fragment childFragment) {
+		super.onAttachFragment(childFragment);
+		
+		// child Fragments of this class register themselves in the Fragment tree index
+		if (!(childFragment instanceof Fragment) && !otherChildren.contains(childFragment)) {
+			otherChildren.add(childFragment);
+		}
+	}
+	
+	
+	/**
+	 * Prepare the Fragment for being shown and invoke {@link #onShow()}.
+	 */
+	private void dispatchShow() {
+		boolean traced = LifecycleTracer.beginSection("Fragment.onShow ", this);
+		shown = true;
+		if (hiddenViewDetacher != null) {
+			hiddenViewDetacher.onShown();
+		}
+		if (getActivity() instanceof Activity) {
+			((Activity) getActivity()).onFragmentShown(this);
+		}
+		if (backPressHandlerEnabled) {
+			updateBackPressRegistration();
+		}
+		if (visibilityScheduler != null) {
+			visibilityScheduler.onShow();
+		}
+		if (deferredLayoutResId != 0) {
+			// deferred layout is inflated on first show
+			int layoutResId = deferredLayoutResId;
+			deferredLayoutResId = 0;
+			attachInflatedLayout(getLayoutInflater().inflate(layoutResId, layoutPlaceholder, false));
+		}
+		onShow();
+		
+		StartupProfiler.onFragmentShow(this);
+		if (lifecycleTrace != null && !lifecycleTrace.isFinished()) {
+			// first show: wait for the first frame drawn
+			markLifecycle(LifecycleTrace.FRAGMENT_SHOW);
+			lifecycleTrace.markFirstFrame(getView());
+		}
+		if (traced) {
+			LifecycleTracer.endSection();
+		}
+	}
+	
+	
+	/**
+	 * Invoke {@link #onHide()}.
+	 */
+	private void dispatchHide() {
+		boolean traced = LifecycleTracer.beginSection("Fragment.onHide ", this);
+		shown = false;
+		if (hiddenViewDetacher != null && started && getView() != null) {
+			// hidden rather than stopped
+			hiddenViewDetacher.onHidden(getView());
+		}
+		if (getActivity() instanceof Activity) {
+			((Activity) getActivity()).onFragmentHidden(this);
+		}
+		if (backPressHandlerEnabled) {
+			updateBackPressRegistration();
+		}
+		if (visibilityScheduler != null) {
+			visibilityScheduler.onHide();
+		}
+		onHide();
+		
+		if (traced) {
+			LifecycleTracer.endSection();
+		}
+	}
+	
+	
+	private void markLifecycle(int milestone) {
+		if (lifecycleTrace != null) {
+			lifecycleTrace.mark(milestone);
+		}
+	}
+	
+	
+	@Override
+	public void onViewStateRestored(Bundle savedInstanceState) {
+		// the view has been created and its state restored
+		markLifecycle(LifecycleTrace.FRAGMENT_VIEW);
+		super.onViewStateRestored(savedInstanceState);
+	}
+	
+	
+	/**
+	 * Get a resource pool shared by the Fragments of the Activity, e.g. the {@link BitmapPool}, {@link PaintCache} 
+	 * or {@link TextMeasureCache}.
+	 * @param type The pool's class
+	 * @return The resource pool, or null if the Fragment is not attached to an {@link Activity} or it is destroyed.
+	 * @see Activity#getResourcePool(Class)
+	 */
+	public <T extends ResourcePool> T getResourcePool(Class<T> type) {
+		if (!(getActivity() instanceof Activity)) {
+			return null;
+		}
+		return ((Activity) getActivity()).getResourcePool(type);
+	}
+	
+	
+	/**
+	 * Enable or disable the detaching of this Fragment's view while it is hidden. If enabled, the view is removed from 
+	 * its container after the grace period, which excludes it from layout and draw, and the view cache is released. 
+	 * The view is reattached right before {@link #onShow()}.
+	 * @param graceMillis Delay after {@link #onHide()} before the view is detached, or a negative value to disable.
+	 * @see #getHiddenViewDetacher()
+	 */
+	public void setDetachViewWhenHidden(long graceMillis) {
+		if (hiddenViewDetacher != null) {
+			hiddenViewDetacher.onShown();
+		}
+		hiddenViewDetacher = graceMillis >= 0 ? new HiddenViewDetacher(this, graceMillis) : null;
+	}
+	
+	
+	/**
+	 * Get the detacher of this Fragment's hidden view, which provides statistics.
+	 * @return The HiddenViewDetacher, or null if not enabled.
+	 * @see #setDetachViewWhenHidden(long)
+	 */
+	public HiddenViewDetacher getHiddenViewDetacher() {
+		return hiddenViewDetacher;
+	}
+	
+	
+	/**
+	 * Get the scheduler for work that should only run while this Fragment is visible.
+	 * Deferred and periodic work is paused or throttled on {@link #onHide()}, resumed on {@link #onShow()} and 
+	 * cancelled when the Fragment is destroyed.
+	 * @return The VisibilityScheduler of this Fragment
+	 */
+	public VisibilityScheduler getVisibilityScheduler() {
+		if (visibilityScheduler == null) {
+			visibilityScheduler = new VisibilityScheduler(shown);
+		}
+		return visibilityScheduler;
+	}
+	
+	
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		markLifecycle(LifecycleTrace.FRAGMENT_CREATE);
+		super.onCreate(savedInstanceState);
+		
+		// start reading the large state in the background
+		String largeStatePath = savedInstanceState != null ? savedInstanceState.getString(KEY_LARGE_STATE_FILE) : null;
+		if (largeStatePath != null) {
+			largeStateFile = new File(largeStatePath);
+			largeState = StateSerializer.open(largeStateFile, getClass().getClassLoader());
+		}
+	}
+	
+	
+	@Override
+	public void onSaveInstanceState(Bundle outState) {
+		super.onSaveInstanceState(outState);
+		
+		BundleBuilder builder = new BundleBuilder();
+		onSaveLargeState(builder);
+		FrozenBundle state = builder.buildFrozen();
+		if (state.isEmpty()) {
+			if (largeStateFile != null) {
+				// the previous state is obsolete, it's deleted after pending reads
+				StateSerializer.delete(largeStateFile);
+				largeStateFile = null;
+			}
+			return;
+		}
+		
+		// take a cheap snapshot here, serialize and compress it in the background, replacing the previous file
+		if (largeStateFile == null) {
+			largeStateFile = new File(new File(getActivity().getCacheDir(), LARGE_STATE_DIRECTORY), 
+					UUID.randomUUID() + ".snap");
+		}
+		StateSerializer.write(state, largeStateFile);
+		outState.putString(KEY_LARGE_STATE_FILE, largeStateFile.getPath());
+	}
+	
+	
+	/**
+	 * Save large state that is written to disk in the background instead of the saved instance state.<br>
+	 * Only an immutable snapshot of the state is taken on the main thread, values must not be modified afterwards.
+	 * The state is available through {@link #getLargeState()} after the Fragment has been recreated.<br>
+	 * May be overridden by a subclass.
+	 * @param state The BundleBuilder to put the state into
+	 */
+	protected void onSaveLargeState(BundleBuilder state) {
+		// to be overidden
+	}
+	
+	
+	/**
+	 * Get the large state saved by {@link #onSaveLargeState(BundleBuilder)} before the Fragment has been recreated.
+	 * The state is read in the background from {@link #onCreate(Bundle)} on, this method only waits if the read is 
+	 * still in progress. Values are decoded on first access.
+	 * @return The saved state, or null if there is none or it could not be read.
+	 */
+	protected BundleSnapshot getLargeState() {
+		if (largeState == null) {
+			return null;
+		}
+		try {
+			return largeState.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch (ExecutionException e) {
+			return null;
+		}
+	}
+	
+	
+	@Override
+	public void onDestroy() {
+		super.onDestroy();
+		
+		if (visibilityScheduler != null) {
+			visibilityScheduler.destroy();
+		}
+		
+		// the large state won't be restored if the Fragment is removed for good
+		if (largeStateFile != null && isRemovedForGood()) {
+			StateSerializer.delete(largeStateFile);
+			largeStateFile = null;
+		}
+	}
+	
+	
+	/**
+	 * Check whether this Fragment won't be restored, because it, one of its parents or the Activity is being removed.
+	 */
+	private boolean isRemovedForGood() {
+		if (getActivity() != null && getActivity().isFinishing()) {
+			return true;
+		}
+		for (android.support.v4.app.Fragment fragment = this; fragment != null; fragment = fragment.getParentFragment()) {
+			if (fragment.isRemoving()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * The Fragment (or the Activity) got visible.<br>
+	 * May be overridden by a subclass.
+	 */
+	public void onShow() {
+		// to be overidden
+	}
+	
+	
+	/**
+	 * The Fragment (or the Activity) has been hidden.<br>
+	 * May be overridden by a subclass.
+	 */
+	public void onHide() {
+		// to be overidden
+	}
+	
+	
+	/**
+	 * Called when the Activity has detected the user's press of the back key.<br>
+	 * It's recommended only to do something (i.e. handle the event) if the super implementation returns false. 
+	 * @return true if the event has been consumed, false otherwise.
+	 */
+	protected boolean onBackPressed() {
+		if (getActivity() instanceof Activity && ((Activity) getActivity()).isIndexedBackDispatch()) {
+			// child Fragments are invoked through their own registration
+			return false;
+		}
+		// propagate the onBackPressed to child Fragments
+		return triggerOnBackPressed(getChildFragmentManager().getFragments());
+	}
+	
+	
+	/**
+	 * Register this Fragment for the indexed back press dispatch of the {@link Activity}. While the Fragment is 
+	 * visible, its {@link #onBackPressed()} is invoked before the handlers with a lower priority.
+	 * @param priority Handlers with a higher priority are invoked first, equal priorities in reverse order of 
+	 * becoming visible.
+	 * @see Activity#setIndexedBackDispatch(boolean)
+	 */
+	public void registerBackPressHandler(int priority) {
+		backPressPriority = priority;
+		backPressHandlerEnabled = true;
+		if (shown) {
+			updateBackPressRegistration();
+		}
+	}
+	
+	
+	/**
+	 * Unregister this Fragment from the indexed back press dispatch.
+	 */
+	public void unregisterBackPressHandler() {
+		backPressHandlerEnabled = false;
+		updateBackPressRegistration();
+	}
+	
+	
+	private void updateBackPressRegistration() {
+		if (!(getActivity() instanceof Activity)) {
+			return;
+		}
+		BackPressDispatcher dispatcher = ((Activity) getActivity()).getBackPressDispatcher();
+		if (backPressHandlerEnabled && shown) {
+			dispatcher.register(this, backPressPriority);
+		}
+		else {
+			dispatcher.unregister(this);
+		}
+	}
+	
+	
+	/**
+	 * Interate a list of active Fragments and invoke their {@link #onBackPressed()} event callback.
+	 * @param fragments
+	 * @return true if a Fragment consumed the event, false otherwise.
+	 */
+	protected static boolean triggerOnBackPressed(List<android.support.v4.app.Fragment> fragments) {
+		if (fragments == null) {
+			return false;
+		}
+		
+		// iterate visible Fragments
+		for (android.support.v4.app.Fragment fragment : fragments) {
+			if (fragment instanceof Fragment && fragment.isVisible()) {
+				boolean consumed = ((Fragment)fragment).onBackPressed();
+				if (consumed) return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	
+	/**
+	 * Get a typed argument of the Fragment. The value is decoded from {@link #getArguments()} only once.
+	 * @param key Argument key
+	 * @return The argument value, or the key's default value
+	 */
+	public <T> T getArgument(ArgumentKey<T> key) {
+		if (argumentCache == null) {
+			argumentCache = new ArgumentCache();
+		}
+		return argumentCache.get(key, getArguments());
+	}
+	
+	
+	/**
+	 * Override a typed argument of the Fragment.
+	 * @param key Argument key
+	 * @param value Argument value
+	 * @see #getArguments()
+	 */
+	public <T> void overrideArgument(ArgumentKey<T> key, T value) {
+		key.write(getArguments(), value);
+		if (argumentCache != null) {
+			argumentCache.set(key, value);
+		}
+	}
+	
+	
+	@Override
+	public void setArguments(Bundle args) {
+		if (args != null && args.hasFileDescriptors()) {
+			// arguments are part of the saved state, which must not carry file descriptors
+			throw new IllegalArgumentException("Fragment arguments must not contain file descriptors, "
+					+ "e.g. spilled values of a BundleBuilder");
+		}
+		super.setArguments(args);
+		invalidateArgumentCache();
+	}
+	
+	
+	private void invalidateArgumentCache() {
+		if (argumentCache != null) {
+			argumentCache.clear();
+		}
+	}
+	
+	
+	/**
+	 * Override a String argument of the Fragment.
+	 * @param key Argument key
+	 * @param value Argument String value
+	 * @see #getArguments()
+	 */
+	public void overrideArgument(String key, String value) {
+		getArguments().putString(key, value);
+		invalidateArgumentCache();
+	}
+	
+	
+	/**
+	 * Override a integer argument of the Fragment.
+	 * @param key Argument key
+	 * @param value Argument integer value
+	 * @see #getArguments()
+	 */
+	public void overrideArgument(String key, int value) {
+		getArguments().putInt(key, value);
+		invalidateArgumentCache();
+	}
+	
+	
+	/**
+	 * Override a long argument of the Fragment.
+	 * @param key Argument key
+	 * @param value Argument long value
+	 * @see #getArguments()
+	 */
+	public void overrideArgument(String key, long value) {
+		getArguments().putLong(key, value);
+		invalidateArgumentCache();
+	}
+	
+	
+	/**
+	 * Override a boolean argument of the Fragment.
+	 * @param key Argument key
+	 * @param value Argument boolean value
+	 * @see #getArguments()
+	 */
+	public void overrideArgument(String key, boolean value) {
+		getArguments().putBoolean(key, value);
+		invalidateArgumentCache();
+	}
+
+
+	/**
+	 * Find the Fragment that is directly attached to the Activity.
+	 * The result is cached while this Fragment is attached.
+	 * @return Top level Fragment
+	 */
+	public android.support.v4.app.Fragment getTopLevelFragment() {
+		if (topLevelFragment != null) {
+			return topLevelFragment;
+		}
+		return findTopLevelFragment(this);
+	}
+	
+	
+	private static android.support.v4.app.Fragment findTopLevelFragment(android.support.v4.app.Fragment fragment) {
+		while (fragment.getParentFragment() != null) {
+			fragment = fragment.getParentFragment();
+		}
+		return fragment;
+	}
+	
+}
@@ -0,0 +1,141 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.ArrayDeque;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.support.v4.app.FragmentManager;
+
+/**
+ * Creates Fragments in the hidden state while the main thread is idle, one Fragment per idle period.
+ * <p>
+ * Prewarming is paused for a moment after every input event and stops as soon as the used heap exceeds the budget.
+ * 
+ * @author Floern
+ * @see Activity#prewarmFragment(int, String, Activity.FragmentFactory)
+ */
+class FragmentPrewarmer implements MessageQueue.IdleHandler {
+	
+	/** time after an input event during which prewarming is paused */
+	private static final long INPUT_QUIET_MILLIS = 500;
+	
+	private static final class Request {
+		final int containerId;
+		final String tag;
+		final Activity.FragmentFactory factory;
+		
+		Request(int containerId, String tag, Activity.FragmentFactory factory) {
+			this.containerId = containerId;
+			this.tag = tag;
+			this.factory = factory;
+		}
+	}
+	
+	private final Activity activity;
+	
+	private final ArrayDeque<Request> requests = new ArrayDeque<>();
+	
+	private long maxHeapUsage = Runtime.getRuntime().maxMemory() / 2;
+	
+	private long lastInputTime;
+	
+	private boolean installed;
+	
+	private boolean resumed;
+	
+	
+	FragmentPrewarmer(Activity activity) {
+		this.activity = activity;
+	}
+	
+	
+	void enqueue(int containerId, String tag, Activity.FragmentFactory factory) {
+		requests.add(new Request(containerId, tag, factory));
+		install();
+	}
+	
+	
+	void setMaxHeapUsage(long bytes) {
+		maxHeapUsage = bytes;
+	}
+	
+	
+	void cancel() {
+		requests.clear();
+		uninstall();
+	}
+	
+	
+	void onInput() {
+		lastInputTime = SystemClock.uptimeMillis();
+	}
+	
+	
+	void onResume() {
+		resumed = true;
+		if (!requests.isEmpty()) {
+			install();
+		}
+	}
+	
+	
+	void onPause() {
+		resumed = false;
+		uninstall();
+	}
+	
+	
+	private void install() {
+		if (!installed && resumed) {
+			Looper.myQueue().addIdleHandler(this);
+			installed = true;
+		}
+	}
+	
+	
+	private void uninstall() {
+		if (installed) {
+			Looper.myQueue().removeIdleHandler(this);
+			installed = false;
+		}
+	}
+	
+	
+	@Override
+	public boolean queueIdle() {
+		if (!resumed || activity.isFinishing() || requests.isEmpty()) {
+			installed = false;
+			return false;
+		}
+		if (SystemClock.uptimeMillis() - lastInputTime < INPUT_QUIET_MILLIS) {
+			// the user is interacting, try again at the next idle period
+			return true;
+		}
+		
+		Runtime runtime = Runtime.getRuntime();
+		if (runtime.totalMemory() - runtime.freeMemory() > maxHeapUsage) {
+			// memory budget exhausted, abort
+			requests.clear();
+			installed = false;
+			return false;
+		}
+		
+		Request request = requests.poll();
+		FragmentManager fragmentManager = activity.getSupportFragmentManager();
+		if (fragmentManager.findFragmentByTag(request.tag) == null) {
+			android.support.v4.app.Fragment fragment = request.factory.create();
+			fragmentManager.beginTransaction()
+					.add(request.containerId, fragment, request.tag)
+					.hide(fragment)
+					.commitNow();
+		}
+		
+		installed = !requests.isEmpty();
+		return installed;
+	}
+	
+}
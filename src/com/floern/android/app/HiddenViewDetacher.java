@@ -0,0 +1,190 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import android.os.SystemClock;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+/**
+ * Detaches the view of a hidden Fragment from its container after a grace period and reattaches it when the Fragment
+ * is shown again, and releases the Fragment's view cache meanwhile.
+ * <p>
+ * A hidden Fragment's view is already GONE, so it is not measured, laid out or drawn either way. Detaching removes it
+ * from the remaining per-traversal work of its container, from the window's input, focus and accessibility handling
+ * and from the listeners of the window's ViewTreeObserver.
+ * <p>
+ * The layout time saved is estimated per detach: a measure and layout pass of the container is timed right before 
+ * and right after the view is removed, and the difference is counted for every layout pass of the container while 
+ * the view is detached. This costs two extra layout passes of the container per detach.
+ * 
+ * @author Floern
+ * @see Fragment#setDetachViewWhenHidden(long)
+ */
+public class HiddenViewDetacher {
+	
+	private final Fragment fragment;
+	
+	private final long graceMillis;
+	
+	private View view;
+	
+	private ViewGroup detachedParent;
+	
+	private int detachedIndex;
+	
+	private long detachedSince;
+	
+	private int detachCount;
+	
+	private long detachedMillis;
+	
+	/** layout time saved per layout pass of the container during the current detach period */
+	private long savedNanosPerPass;
+	
+	private int savedLayoutPasses;
+	
+	private long savedLayoutNanos;
+	
+	private final View.OnLayoutChangeListener layoutCounter = new View.OnLayoutChangeListener() {
+		@Override
+		public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, 
+				int oldRight, int oldBottom) {
+			++savedLayoutPasses;
+			savedLayoutNanos += savedNanosPerPass;
+		}
+	};
+	
+	private final Runnable detachRunnable = new Runnable() {
+		@Override
+		public void run() {
+			detach();
+		}
+	};
+	
+	
+	HiddenViewDetacher(Fragment fragment, long graceMillis) {
+		this.fragment = fragment;
+		this.graceMillis = graceMillis;
+	}
+	
+	
+	/**
+	 * The Fragment has been hidden: detach its view after the grace period.
+	 * @param view The Fragment's view
+	 */
+	void onHidden(View view) {
+		cancel();
+		this.view = view;
+		view.postDelayed(detachRunnable, graceMillis);
+	}
+	
+	
+	/**
+	 * The Fragment is about to be shown: reattach its view.
+	 */
+	void onShown() {
+		cancel();
+		if (detachedParent != null) {
+			detachedParent.removeOnLayoutChangeListener(layoutCounter);
+			detachedParent.addView(view, Math.min(detachedIndex, detachedParent.getChildCount()));
+			detachedMillis += SystemClock.uptimeMillis() - detachedSince;
+			detachedParent = null;
+		}
+		view = null;
+	}
+	
+	
+	/**
+	 * The Fragment's view has been destroyed: drop all references.
+	 */
+	void onViewDestroyed() {
+		cancel();
+		if (detachedParent != null) {
+			detachedParent.removeOnLayoutChangeListener(layoutCounter);
+			detachedMillis += SystemClock.uptimeMillis() - detachedSince;
+			detachedParent = null;
+		}
+		view = null;
+	}
+	
+	
+	private void cancel() {
+		if (view != null) {
+			view.removeCallbacks(detachRunnable);
+		}
+	}
+	
+	
+	private void detach() {
+		if (!(view.getParent() instanceof ViewGroup)) {
+			return;
+		}
+		detachedParent = (ViewGroup) view.getParent();
+		detachedIndex = detachedParent.indexOfChild(view);
+		long withView = timeLayoutPass(detachedParent);
+		detachedParent.removeView(view);
+		long withoutView = timeLayoutPass(detachedParent);
+		savedNanosPerPass = Math.max(withView - withoutView, 0);
+		detachedParent.addOnLayoutChangeListener(layoutCounter);
+		detachedSince = SystemClock.uptimeMillis();
+		++detachCount;
+		fragment.invalidateViewCache();
+	}
+	
+	
+	/**
+	 * Time a measure and layout pass of the container at its current size.
+	 * @return Duration in nanoseconds, 0 if the container has not been laid out yet.
+	 */
+	private static long timeLayoutPass(ViewGroup parent) {
+		if (parent.getWidth() == 0 && parent.getHeight() == 0) {
+			return 0;
+		}
+		long start = System.nanoTime();
+		parent.forceLayout();
+		parent.measure(MeasureSpec.makeMeasureSpec(parent.getWidth(), MeasureSpec.EXACTLY), 
+				MeasureSpec.makeMeasureSpec(parent.getHeight(), MeasureSpec.EXACTLY));
+		parent.layout(parent.getLeft(), parent.getTop(), parent.getRight(), parent.getBottom());
+		return System.nanoTime() - start;
+	}
+	
+	
+	/**
+	 * Get the number of times the view has been detached.
+	 * @return Number of detaches
+	 */
+	public int getDetachCount() {
+		return detachCount;
+	}
+	
+	
+	/**
+	 * Get the total time the view has been detached, excluding the current detach period.
+	 * @return Time in milliseconds
+	 */
+	public long getDetachedMillis() {
+		return detachedMillis;
+	}
+	
+	
+	/**
+	 * Get the number of layout passes of the container while the view has been detached.
+	 * @return Number of layout passes
+	 */
+	public int getSavedLayoutPasses() {
+		return savedLayoutPasses;
+	}
+	
+	
+	/**
+	 * Get the estimated layout time saved while the view has been detached, see the class description.
+	 * @return Time in milliseconds
+	 */
+	public float getSavedLayoutMillis() {
+		return savedLayoutNanos / 1000000f;
+	}
+	
+}
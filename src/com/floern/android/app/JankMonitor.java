@@ -0,0 +1,241 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * Detects frames over budget through {@link Choreographer} frame callbacks and attributes them to the Fragments that
+ * are visible at that time.
+ * <p>
+ * The frame time is the interval between two consecutive frame callbacks. A frame is janky if it took longer than the
+ * budget of one display refresh period plus half a period of tolerance. While the monitor runs, a frame callback is
+ * posted for every display refresh, so it should only be enabled for diagnostics.
+ * 
+ * @author Floern
+ * @see Activity#setJankMonitorEnabled(boolean)
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class JankMonitor implements Choreographer.FrameCallback {
+	
+	private static final long DEFAULT_FRAME_BUDGET_NANOS = 1000000000L / 60;
+	
+	private final List<Fragment> visibleFragments;
+	
+	private final Stats activityStats = new Stats();
+	
+	/** stats by Fragment class name */
+	private final Map<String, Stats> fragmentStats = new LinkedHashMap<>();
+	
+	private long frameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+	
+	private long lastFrameTimeNanos;
+	
+	private boolean running;
+	
+	
+	/**
+	 * Frame statistics of an Activity or of a Fragment class.
+	 */
+	public static class Stats {
+		
+		private final LatencyHistogram frameTimes = new LatencyHistogram();
+		
+		private long jankCount;
+		
+		private long droppedFrames;
+		
+		
+		private Stats() {
+		}
+		
+		
+		private synchronized void record(long frameTimeNanos, int dropped) {
+			frameTimes.record(frameTimeNanos);
+			if (dropped > 0) {
+				++jankCount;
+				droppedFrames += dropped;
+			}
+		}
+		
+		
+		/**
+		 * Get the number of frames.
+		 * @return Number of frames
+		 */
+		public long getFrameCount() {
+			return frameTimes.getCount();
+		}
+		
+		
+		/**
+		 * Get the number of frames over budget.
+		 * @return Number of janky frames
+		 */
+		public synchronized long getJankCount() {
+			return jankCount;
+		}
+		
+		
+		/**
+		 * Get the number of display refreshes missed by janky frames.
+		 * @return Number of dropped frames
+		 */
+		public synchronized long getDroppedFrames() {
+			return droppedFrames;
+		}
+		
+		
+		/**
+		 * Get the histogram of frame times, e.g. for percentiles.
+		 * @return The frame time histogram
+		 */
+		public LatencyHistogram getFrameTimes() {
+			return frameTimes;
+		}
+		
+		
+		@Override
+		public String toString() {
+			return "frames=" + getFrameCount() + " janky=" + getJankCount() + " dropped=" + getDroppedFrames()
+					+ " " + frameTimes;
+		}
+		
+	}
+	
+	
+	/**
+	 * Create a JankMonitor.
+	 * @param visibleFragments The live list of visible Fragments
+	 */
+	JankMonitor(List<Fragment> visibleFragments) {
+		this.visibleFragments = visibleFragments;
+	}
+	
+	
+	/**
+	 * Start monitoring frames.
+	 * @param refreshRate Display refresh rate in frames per second
+	 */
+	void start(float refreshRate) {
+		if (refreshRate > 0) {
+			frameBudgetNanos = (long) (1000000000L / refreshRate);
+		}
+		if (!running) {
+			running = true;
+			lastFrameTimeNanos = 0;
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+	}
+	
+	
+	/**
+	 * Stop monitoring frames.
+	 */
+	void stop() {
+		if (running) {
+			running = false;
+			Choreographer.getInstance().removeFrameCallback(this);
+		}
+	}
+	
+	
+	@Override
+	public void doFrame(long frameTimeNanos) {
+		if (!running) {
+			return;
+		}
+		if (lastFrameTimeNanos != 0) {
+			recordFrame(frameTimeNanos - lastFrameTimeNanos);
+		}
+		lastFrameTimeNanos = frameTimeNanos;
+		Choreographer.getInstance().postFrameCallback(this);
+	}
+	
+	
+	private void recordFrame(long frameTimeNanos) {
+		// missed refreshes, with half a refresh period of tolerance for vsync jitter
+		int dropped = (int) ((frameTimeNanos + frameBudgetNanos / 2) / frameBudgetNanos) - 1;
+		activityStats.record(frameTimeNanos, dropped);
+		for (int i = 0, count = visibleFragments.size(); i < count; ++i) {
+			Class<?> fragmentClass = visibleFragments.get(i).getClass();
+			if (!isCountedBefore(fragmentClass, i)) {
+				getOrCreateStats(fragmentClass.getName()).record(frameTimeNanos, dropped);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Check whether a visible Fragment before the given index has the same class, to count each class once per frame.
+	 */
+	private boolean isCountedBefore(Class<?> fragmentClass, int index) {
+		for (int i = 0; i < index; ++i) {
+			if (visibleFragments.get(i).getClass() == fragmentClass) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	
+	private Stats getOrCreateStats(String className) {
+		synchronized (fragmentStats) {
+			Stats stats = fragmentStats.get(className);
+			if (stats == null) {
+				stats = new Stats();
+				fragmentStats.put(className, stats);
+			}
+			return stats;
+		}
+	}
+	
+	
+	/**
+	 * Get the frame budget, i.e. the display refresh period.
+	 * @return Frame budget in nanoseconds
+	 */
+	public long getFrameBudgetNanos() {
+		return frameBudgetNanos;
+	}
+	
+	
+	/**
+	 * Get the statistics of all frames of the Activity.
+	 * @return The Activity's Stats
+	 */
+	public Stats getActivityStats() {
+		return activityStats;
+	}
+	
+	
+	/**
+	 * Get the statistics of the frames during which a Fragment of the given class was visible.
+	 * @param fragmentClass Fragment class
+	 * @return The Stats, or null if no Fragment of that class was visible yet.
+	 */
+	public Stats getFragmentStats(Class<? extends Fragment> fragmentClass) {
+		synchronized (fragmentStats) {
+			return fragmentStats.get(fragmentClass.getName());
+		}
+	}
+	
+	
+	/**
+	 * Get the statistics of all Fragment classes.
+	 * @return A copy of the Stats by Fragment class name
+	 */
+	public Map<String, Stats> getAllFragmentStats() {
+		synchronized (fragmentStats) {
+			return new LinkedHashMap<>(fragmentStats);
+		}
+	}
+	
+}
@@ -0,0 +1,141 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A histogram of durations with log-linear buckets of microsecond resolution. Each power of two is split into 8
+ * buckets, so percentiles are accurate to about 12%. Recording does not allocate.
+ * 
+ * @author Floern
+ * @see LifecycleTracer
+ */
+public class LatencyHistogram {
+	
+	/** buckets per power of two */
+	private static final int SUB_BUCKETS = 8;
+	
+	private static final int SUB_BUCKET_BITS = 3;
+	
+	/** values below this have their own bucket */
+	private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+	
+	/** largest power of two covered, longer durations are clamped */
+	private static final int MAX_EXPONENT = 36;
+	
+	private final long[] buckets = new long[LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKETS];
+	
+	private long count;
+	
+	private long totalMicros;
+	
+	private long maxMicros;
+	
+	
+	/**
+	 * Record a duration.
+	 * @param nanos Duration in nanoseconds
+	 */
+	public synchronized void record(long nanos) {
+		long micros = Math.max(nanos / 1000, 0);
+		++buckets[bucketOf(micros)];
+		++count;
+		totalMicros += micros;
+		maxMicros = Math.max(maxMicros, micros);
+	}
+	
+	
+	private int bucketOf(long micros) {
+		if (micros < LINEAR_LIMIT) {
+			return (int) micros;
+		}
+		int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT - 1);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) Math.min((micros >> shift) - SUB_BUCKETS, SUB_BUCKETS - 1);
+		return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	
+	/**
+	 * Get the upper bound of a bucket in microseconds.
+	 */
+	private static long upperBoundOf(int bucket) {
+		if (bucket < LINEAR_LIMIT) {
+			return bucket;
+		}
+		int shift = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+		int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+	
+	
+	/**
+	 * Get the number of recorded durations.
+	 * @return Number of durations
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	
+	/**
+	 * Get the mean of the recorded durations.
+	 * @return Mean in milliseconds, 0 if nothing has been recorded.
+	 */
+	public synchronized float getMeanMillis() {
+		return count > 0 ? totalMicros / 1000f / count : 0;
+	}
+	
+	
+	/**
+	 * Get the longest recorded duration.
+	 * @return Maximum in milliseconds
+	 */
+	public synchronized float getMaxMillis() {
+		return maxMicros / 1000f;
+	}
+	
+	
+	/**
+	 * Get a percentile of the recorded durations.
+	 * @param percentile Percentile between 0 and 100
+	 * @return Upper bound of the percentile in milliseconds, 0 if nothing has been recorded.
+	 */
+	public synchronized float getPercentileMillis(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max((long) Math.ceil(count * percentile / 100), 1);
+		long seen = 0;
+		for (int i = 0; i < buckets.length; ++i) {
+			seen += buckets[i];
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), maxMicros) / 1000f;
+			}
+		}
+		return maxMicros / 1000f;
+	}
+	
+	
+	/**
+	 * Remove all recorded durations.
+	 */
+	public synchronized void reset() {
+		Arrays.fill(buckets, 0);
+		count = 0;
+		totalMicros = 0;
+		maxMicros = 0;
+	}
+	
+	
+	@Override
+	public synchronized String toString() {
+		return String.format(Locale.US, "n=%d mean=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+				count, getMeanMillis(), getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99),
+				getMaxMillis());
+	}
+	
+}
@@ -0,0 +1,127 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Records the lifecycle milestones of a single Fragment or Activity until its first frame.
+ * 
+ * @author Floern
+ * @see LifecycleTracer
+ */
+final class LifecycleTrace implements ViewTreeObserver.OnPreDrawListener {
+	
+	static final String[] FRAGMENT_MILESTONES = { "attach", "create", "view", "start", "show", "frame" };
+	
+	static final int FRAGMENT_ATTACH = 0;
+	static final int FRAGMENT_CREATE = 1;
+	static final int FRAGMENT_VIEW = 2;
+	static final int FRAGMENT_START = 3;
+	static final int FRAGMENT_SHOW = 4;
+	static final int FRAGMENT_FRAME = 5;
+	
+	static final String[] ACTIVITY_MILESTONES = { "create", "start", "resume", "frame" };
+	
+	static final int ACTIVITY_CREATE = 0;
+	static final int ACTIVITY_START = 1;
+	static final int ACTIVITY_RESUME = 2;
+	static final int ACTIVITY_FRAME = 3;
+	
+	private final Class<?> type;
+	
+	private final String[] milestones;
+	
+	private final long[] timestamps;
+	
+	/** view waiting for its first frame */
+	private View frameView;
+	
+	private boolean finished;
+	
+	
+	/**
+	 * Create a trace if tracing is enabled.
+	 * @return A LifecycleTrace, or null if disabled.
+	 */
+	static LifecycleTrace start(Object owner, String[] milestones) {
+		return LifecycleTracer.isEnabled() ? new LifecycleTrace(owner.getClass(), milestones) : null;
+	}
+	
+	
+	private LifecycleTrace(Class<?> type, String[] milestones) {
+		this.type = type;
+		this.milestones = milestones;
+		this.timestamps = new long[milestones.length];
+	}
+	
+	
+	/**
+	 * Record a milestone, unless it has been recorded before.
+	 * @param milestone Milestone index
+	 */
+	void mark(int milestone) {
+		if (timestamps[milestone] == 0) {
+			timestamps[milestone] = System.nanoTime();
+		}
+	}
+	
+	
+	/**
+	 * Record the last milestone when the next frame of the view is drawn, then finish.
+	 * @param view The view, or null to finish without a frame.
+	 */
+	void markFirstFrame(View view) {
+		if (view == null) {
+			finish();
+			return;
+		}
+		if (frameView == null && !finished) {
+			frameView = view;
+			view.getViewTreeObserver().addOnPreDrawListener(this);
+		}
+	}
+	
+	
+	@Override
+	public boolean onPreDraw() {
+		mark(milestones.length - 1);
+		finish();
+		return true;
+	}
+	
+	
+	/**
+	 * Report the recorded milestones.
+	 */
+	void finish() {
+		cancel();
+		if (!finished) {
+			finished = true;
+			LifecycleTracer.record(type, milestones, timestamps);
+		}
+	}
+	
+	
+	/**
+	 * Stop waiting for the first frame without reporting.
+	 */
+	void cancel() {
+		if (frameView != null) {
+			// the observer of a detached view is replaced on attach, don't keep a reference to it
+			ViewTreeObserver observer = frameView.getViewTreeObserver();
+			if (observer.isAlive()) {
+				observer.removeOnPreDrawListener(this);
+			}
+			frameView = null;
+		}
+	}
+	
+	
+	boolean isFinished() {
+		return finished;
+	}
+	
+}
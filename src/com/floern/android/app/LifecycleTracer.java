@@ -0,0 +1,190 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import android.support.v4.os.TraceCompat;
+
+/**
+ * Aggregates the lifecycle latencies of {@link Fragment}s and {@link Activity}s into histograms per class and phase.
+ * <p>
+ * Each instance records monotonic timestamps of its lifecycle milestones until its first frame has been drawn, then
+ * the durations between consecutive milestones are added to the histograms of its class. The phase of a duration is
+ * named after the milestone it ends with, <code>total</code> spans from the first to the last milestone.<br>
+ * Fragment milestones: <code>attach</code>, <code>create</code>, <code>view</code> (view created and restored),
+ * <code>start</code>, <code>show</code> (first {@link Fragment#onShow()}), <code>frame</code> (first frame drawn).<br>
+ * Activity milestones: <code>create</code>, <code>start</code>, <code>resume</code>, <code>frame</code>.
+ * <p>
+ * Tracing is disabled by default. Instances created before it is enabled are not traced.
+ * 
+ * @author Floern
+ */
+public final class LifecycleTracer {
+	
+	public static final String PHASE_TOTAL = "total";
+	
+	private static volatile boolean enabled;
+	
+	private static volatile boolean traceSections;
+	
+	/** histograms by class name and phase */
+	private static final Map<String, Map<String, LatencyHistogram>> histograms = new LinkedHashMap<>();
+	
+	
+	private LifecycleTracer() {
+	}
+	
+	
+	/**
+	 * Enable or disable the recording of lifecycle latencies.
+	 * @param enabled true to record
+	 */
+	public static void setEnabled(boolean enabled) {
+		LifecycleTracer.enabled = enabled;
+	}
+	
+	
+	/**
+	 * Check whether lifecycle latencies are recorded.
+	 * @return true if enabled
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	
+	
+	/**
+	 * Enable or disable trace sections around the visibility callbacks of Fragments, which show up in systrace and
+	 * Perfetto.
+	 * @param enabled true to emit trace sections
+	 */
+	public static void setTraceSectionsEnabled(boolean enabled) {
+		traceSections = enabled;
+	}
+	
+	
+	/**
+	 * Begin a trace section if trace sections are enabled.
+	 * @param prefix Section prefix
+	 * @param owner The traced object
+	 * @return true if a section has been begun and must be ended with {@link #endSection()}
+	 */
+	static boolean beginSection(String prefix, Object owner) {
+		if (!traceSections) {
+			return false;
+		}
+		String name = prefix + owner.getClass().getSimpleName();
+		// section names are limited to 127 characters
+		TraceCompat.beginSection(name.length() > 127 ? name.substring(0, 127) : name);
+		return true;
+	}
+	
+	
+	static void endSection() {
+		TraceCompat.endSection();
+	}
+	
+	
+	/**
+	 * Add the durations between the recorded milestones to the histograms of a class.
+	 * @param type The traced class
+	 * @param milestones Milestone names
+	 * @param timestamps Timestamps in nanoseconds per milestone, 0 if not recorded
+	 */
+	static void record(Class<?> type, String[] milestones, long[] timestamps) {
+		synchronized (histograms) {
+			Map<String, LatencyHistogram> phases = histograms.get(type.getName());
+			if (phases == null) {
+				phases = new LinkedHashMap<>();
+				histograms.put(type.getName(), phases);
+			}
+			long first = 0;
+			long previous = 0;
+			for (int i = 0; i < milestones.length; ++i) {
+				if (timestamps[i] == 0) {
+					// the duration is attributed to the next recorded milestone
+					continue;
+				}
+				if (previous != 0) {
+					getOrCreate(phases, milestones[i]).record(timestamps[i] - previous);
+				}
+				else {
+					first = timestamps[i];
+				}
+				previous = timestamps[i];
+			}
+			if (previous != first) {
+				getOrCreate(phases, PHASE_TOTAL).record(previous - first);
+			}
+		}
+	}
+	
+	
+	private static LatencyHistogram getOrCreate(Map<String, LatencyHistogram> phases, String phase) {
+		LatencyHistogram histogram = phases.get(phase);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			phases.put(phase, histogram);
+		}
+		return histogram;
+	}
+	
+	
+	/**
+	 * Get the latency histogram of a phase of a class.
+	 * @param type The traced Fragment or Activity class
+	 * @param phase Phase name, i.e. the name of the milestone ending the phase, or {@link #PHASE_TOTAL}.
+	 * @return The LatencyHistogram, or null if nothing has been recorded.
+	 */
+	public static LatencyHistogram getHistogram(Class<?> type, String phase) {
+		synchronized (histograms) {
+			Map<String, LatencyHistogram> phases = histograms.get(type.getName());
+			return phases != null ? phases.get(phase) : null;
+		}
+	}
+	
+	
+	/**
+	 * Write all histograms as tab separated lines: class name, phase, count, mean, p50, p90, p99 and max, durations in
+	 * milliseconds. Only aggregates are written, the cost is independent of the number of traced instances.
+	 * @param writer The target Writer
+	 * @throws IOException if writing fails
+	 */
+	public static void export(Writer writer) throws IOException {
+		List<String> lines = new ArrayList<>();
+		synchronized (histograms) {
+			for (Map.Entry<String, Map<String, LatencyHistogram>> type : histograms.entrySet()) {
+				for (Map.Entry<String, LatencyHistogram> phase : type.getValue().entrySet()) {
+					LatencyHistogram histogram = phase.getValue();
+					lines.add(String.format(Locale.US, "%s\t%s\t%d\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\n",
+							type.getKey(), phase.getKey(), histogram.getCount(), histogram.getMeanMillis(),
+							histogram.getPercentileMillis(50), histogram.getPercentileMillis(90),
+							histogram.getPercentileMillis(99), histogram.getMaxMillis()));
+				}
+			}
+		}
+		for (String line : lines) {
+			writer.write(line);
+		}
+		writer.flush();
+	}
+	
+	
+	/**
+	 * Remove all recorded latencies.
+	 */
+	public static void reset() {
+		synchronized (histograms) {
+			histograms.clear();
+		}
+	}
+	
+}
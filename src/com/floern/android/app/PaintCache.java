@@ -0,0 +1,82 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.HashMap;
+
+import android.graphics.Paint;
+
+import com.floern.android.util.PaintBuilder;
+
+/**
+ * A cache of Paints shared by the Fragments of an Activity, keyed by a name chosen by the caller. Shared Paints must 
+ * not be modified, modify a copy instead.
+ * <p>
+ * Paints are small, the cache is only cleared when the Activity is destroyed.
+ * 
+ * @author Floern
+ * @see Activity#getPaintCache()
+ */
+public class PaintCache implements ResourcePool {
+	
+	private final HashMap<String, Paint> paints = new HashMap<>();
+	
+	
+	/**
+	 * Get a cached Paint.
+	 * @param key Name of the Paint
+	 * @return The Paint, or null if none has been cached under that name.
+	 */
+	public Paint get(String key) {
+		return paints.get(key);
+	}
+	
+	
+	/**
+	 * Get a cached Paint, or build and cache it if there is none.
+	 * @param key Name of the Paint
+	 * @param builder Builds the Paint if there is none
+	 * @return The shared Paint
+	 */
+	public Paint get(String key, PaintBuilder builder) {
+		Paint paint = paints.get(key);
+		if (paint == null) {
+			paint = builder.build();
+			paints.put(key, paint);
+		}
+		return paint;
+	}
+	
+	
+	/**
+	 * Cache a Paint.
+	 * @param key Name of the Paint
+	 * @param paint The Paint, must not be modified afterwards.
+	 */
+	public void put(String key, Paint paint) {
+		paints.put(key, paint);
+	}
+	
+	
+	@Override
+	public void trim(int level) {
+		// shared Paints are kept, recreating them would produce new instances for the same name
+	}
+	
+	
+	@Override
+	public void clear() {
+		paints.clear();
+	}
+	
+	
+	/**
+	 * Get the number of cached Paints.
+	 * @return Number of Paints
+	 */
+	public int size() {
+		return paints.size();
+	}
+	
+}
@@ -0,0 +1,27 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+/**
+ * A pool of resources shared by the Fragments of an {@link Activity}. Pools are trimmed on memory pressure and 
+ * cleared when the Activity is destroyed.
+ * 
+ * @author Floern
+ * @see Activity#getResourcePool(Class)
+ */
+public interface ResourcePool {
+	
+	/**
+	 * Release pooled resources according to the memory pressure.
+	 * @param level The trim level passed to <code>onTrimMemory()</code>
+	 */
+	void trim(int level);
+	
+	
+	/**
+	 * Release all pooled resources.
+	 */
+	void clear();
+	
+}
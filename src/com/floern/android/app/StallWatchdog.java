@@ -0,0 +1,380 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Printer;
+
+/**
+ * Times each message of the main {@link Looper} and records messages that run longer than a threshold, together with
+ * a sample of the main thread's stack and the Fragments visible at that time, in a bounded ring buffer.
+ * <p>
+ * The Looper's message printer only stores a timestamp per message. A watchdog thread polls at half the threshold and
+ * samples the stack of a message still running after the threshold, so no work is done unless a stall happens.<br>
+ * The main Looper supports only one message printer for the whole process, so there is a single watchdog shared by
+ * all Activities that enabled it. It uses the lowest requested threshold and is uninstalled when the last Activity
+ * disables it. A printer set by other code is replaced.
+ * 
+ * @author Floern
+ * @see Activity#setStallWatchdogEnabled(long)
+ */
+public class StallWatchdog implements Printer {
+	
+	public static final int DEFAULT_CAPACITY = 32;
+	
+	/** shortest polling interval */
+	private static final long MIN_POLL_MILLIS = 10;
+	
+	/** the installed watchdog, null if none */
+	private static StallWatchdog instance;
+	
+	/** live lists of visible Fragments of the Activities using the watchdog, with their requested threshold */
+	private final Map<List<Fragment>, Long> activities = new IdentityHashMap<>();
+	
+	private volatile long thresholdMillis;
+	
+	private final Stall[] stalls;
+	
+	/** index of the next stall to write in the ring buffer */
+	private int nextStall;
+	
+	private int stallCount;
+	
+	/** start of the running message, 0 if the Looper is idle */
+	private volatile long dispatchStart;
+	
+	private volatile String dispatchMessage;
+	
+	/** sequence number of the running message */
+	private volatile int dispatchSequence;
+	
+	/** the stall of the running message, null if it is not stalled (yet) */
+	private final AtomicReference<Stall> currentStall = new AtomicReference<>();
+	
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+	
+	private Thread watchdogThread;
+	
+	
+	/**
+	 * A main thread message that ran longer than the threshold.
+	 */
+	public static class Stall {
+		
+		private final int sequence;
+		
+		private final long uptimeMillis;
+		
+		private final String message;
+		
+		private final StackTraceElement[] stackTrace;
+		
+		private long durationMillis;
+		
+		private List<String> visibleFragments = Collections.emptyList();
+		
+		
+		private Stall(int sequence, long uptimeMillis, String message, StackTraceElement[] stackTrace) {
+			this.sequence = sequence;
+			this.uptimeMillis = uptimeMillis;
+			this.message = message;
+			this.stackTrace = stackTrace;
+		}
+		
+		
+		/**
+		 * Get the start of the message.
+		 * @return Time in milliseconds of {@link SystemClock#uptimeMillis()}
+		 */
+		public long getUptimeMillis() {
+			return uptimeMillis;
+		}
+		
+		
+		/**
+		 * Get the duration of the message.
+		 * @return Duration in milliseconds, 0 if the message is still running.
+		 */
+		public synchronized long getDurationMillis() {
+			return durationMillis;
+		}
+		
+		
+		/**
+		 * Get the description of the message as printed by the Looper, with its target Handler and callback.
+		 * @return The message description
+		 */
+		public String getMessage() {
+			return message;
+		}
+		
+		
+		/**
+		 * Get the stack of the main thread sampled when the message exceeded the threshold.
+		 * @return The stack trace
+		 */
+		public StackTraceElement[] getStackTrace() {
+			return stackTrace.clone();
+		}
+		
+		
+		/**
+		 * Get the class names of the Fragments visible when the message finished.
+		 * @return Fragment class names in the order they got visible
+		 */
+		public synchronized List<String> getVisibleFragments() {
+			return visibleFragments;
+		}
+		
+		
+		private synchronized void finish(long durationMillis, List<String> visibleFragments) {
+			this.durationMillis = durationMillis;
+			this.visibleFragments = visibleFragments;
+		}
+		
+		
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append("stall of ").append(getDurationMillis()).append("ms in ").append(message)
+					.append(", visible: ").append(getVisibleFragments());
+			for (StackTraceElement element : stackTrace) {
+				builder.append("\n\tat ").append(element);
+			}
+			return builder.toString();
+		}
+		
+	}
+	
+	
+	private StallWatchdog(int capacity) {
+		this.stalls = new Stall[capacity];
+	}
+	
+	
+	/**
+	 * Register an Activity with the process-wide watchdog, installing it if it is not running yet. To be called on the
+	 * main thread.
+	 * @param visibleFragments The Activity's live list of visible Fragments, only read on the main thread
+	 * @param thresholdMillis Minimum duration of a recorded message
+	 * @return The installed watchdog
+	 */
+	static StallWatchdog acquire(List<Fragment> visibleFragments, long thresholdMillis) {
+		if (instance == null) {
+			instance = new StallWatchdog(DEFAULT_CAPACITY);
+		}
+		instance.activities.put(visibleFragments, thresholdMillis);
+		instance.updateThreshold();
+		instance.start();
+		return instance;
+	}
+	
+	
+	/**
+	 * Unregister an Activity from the watchdog, uninstalling it when the last Activity has been unregistered. To be 
+	 * called on the main thread.
+	 * @param visibleFragments The Activity's live list of visible Fragments
+	 */
+	static void release(List<Fragment> visibleFragments) {
+		if (instance == null || instance.activities.remove(visibleFragments) == null) {
+			return;
+		}
+		if (instance.activities.isEmpty()) {
+			instance.stop();
+			instance = null;
+		}
+		else {
+			instance.updateThreshold();
+		}
+	}
+	
+	
+	private void updateThreshold() {
+		long threshold = Long.MAX_VALUE;
+		for (long requested : activities.values()) {
+			threshold = Math.min(threshold, requested);
+		}
+		thresholdMillis = threshold;
+	}
+	
+	
+	/**
+	 * Install the message printer and start the watchdog thread.
+	 */
+	private void start() {
+		if (watchdogThread != null) {
+			return;
+		}
+		watchdogThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "StallWatchdog");
+		watchdogThread.setDaemon(true);
+		watchdogThread.start();
+		Looper.getMainLooper().setMessageLogging(this);
+	}
+	
+	
+	/**
+	 * Uninstall the message printer and stop the watchdog thread.
+	 */
+	private void stop() {
+		Looper.getMainLooper().setMessageLogging(null);
+		watchdogThread.interrupt();
+		watchdogThread = null;
+		dispatchStart = 0;
+		currentStall.set(null);
+	}
+	
+	
+	@Override
+	public void println(String line) {
+		// called by the main Looper before and after each message
+		if (line.charAt(0) == '>') {
+			dispatchMessage = line;
+			dispatchSequence++;
+			dispatchStart = SystemClock.uptimeMillis();
+		}
+		else {
+			long start = dispatchStart;
+			dispatchStart = 0;
+			// the watchdog thread takes the stall back if it has been published after this check
+			Stall stall = currentStall.get();
+			if (stall != null && stall.sequence == dispatchSequence && currentStall.compareAndSet(stall, null)) {
+				stall.finish(SystemClock.uptimeMillis() - start, getVisibleFragmentNames());
+			}
+		}
+	}
+	
+	
+	private List<String> getVisibleFragmentNames() {
+		List<String> names = new ArrayList<>();
+		for (List<Fragment> visibleFragments : activities.keySet()) {
+			for (int i = 0; i < visibleFragments.size(); ++i) {
+				names.add(visibleFragments.get(i).getClass().getName());
+			}
+		}
+		return Collections.unmodifiableList(names);
+	}
+	
+	
+	/**
+	 * Poll the running message on the watchdog thread.
+	 */
+	private void watch() {
+		Thread mainThread = Looper.getMainLooper().getThread();
+		int sampledSequence = 0;
+		while (!Thread.currentThread().isInterrupted()) {
+			long thresholdMillis = this.thresholdMillis;
+			try {
+				Thread.sleep(Math.max(thresholdMillis / 2, MIN_POLL_MILLIS));
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+			int sequence = dispatchSequence;
+			long start = dispatchStart;
+			if (start == 0 || sequence == sampledSequence || SystemClock.uptimeMillis() - start < thresholdMillis) {
+				continue;
+			}
+			// sample each stalled message once
+			sampledSequence = sequence;
+			Stall stall = new Stall(sequence, start, dispatchMessage, mainThread.getStackTrace());
+			if (isFinished(sequence)) {
+				// the message finished while sampling, the stack may belong to another message
+				continue;
+			}
+			addStall(stall);
+			currentStall.set(stall);
+			if (isFinished(sequence) && currentStall.compareAndSet(stall, null)) {
+				// the message finished before the stall has been published
+				finishLate(stall);
+			}
+		}
+	}
+	
+	
+	private boolean isFinished(int sequence) {
+		return dispatchSequence != sequence || dispatchStart == 0;
+	}
+	
+	
+	/**
+	 * Finish a stall whose message finished unnoticed by the main thread, with the current time as an upper bound of 
+	 * its end.
+	 */
+	private void finishLate(final Stall stall) {
+		final long durationMillis = SystemClock.uptimeMillis() - stall.uptimeMillis;
+		mainHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				stall.finish(durationMillis, getVisibleFragmentNames());
+			}
+		});
+	}
+	
+	
+	private synchronized void addStall(Stall stall) {
+		stalls[nextStall] = stall;
+		nextStall = (nextStall + 1) % stalls.length;
+		++stallCount;
+	}
+	
+	
+	/**
+	 * Get the recorded stalls.
+	 * @return The most recent stalls, oldest first
+	 */
+	public synchronized List<Stall> getStalls() {
+		List<Stall> list = new ArrayList<>(stalls.length);
+		for (int i = 0; i < stalls.length; ++i) {
+			Stall stall = stalls[(nextStall + i) % stalls.length];
+			if (stall != null) {
+				list.add(stall);
+			}
+		}
+		return list;
+	}
+	
+	
+	/**
+	 * Get the total number of stalls, including those dropped from the ring buffer.
+	 * @return Number of stalls
+	 */
+	public synchronized int getStallCount() {
+		return stallCount;
+	}
+	
+	
+	/**
+	 * Get the minimum duration of a recorded message, the lowest threshold requested by the Activities.
+	 * @return Threshold in milliseconds
+	 */
+	public long getThresholdMillis() {
+		return thresholdMillis;
+	}
+	
+	
+	/**
+	 * Remove all recorded stalls.
+	 */
+	public synchronized void clear() {
+		Arrays.fill(stalls, null);
+		nextStall = 0;
+		stallCount = 0;
+	}
+	
+}
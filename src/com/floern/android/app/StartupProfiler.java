@@ -0,0 +1,262 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Records the phases of the cold start of the process, i.e. the launch of the first {@link Activity} until its first
+ * frame has been drawn.
+ * <p>
+ * Process start is known from API level 24 on. The end of <code>Application.onCreate()</code> must be marked by the
+ * app with {@link #markApplicationCreated()}. An Activity that is finished before drawing a frame, e.g. a trampoline,
+ * hands the launch over to the next Activity.<br>
+ * The breakdown of a launch can be appended to a local file as a tab separated line, see
+ * {@link #setOutputFile(File)}: wall clock time, Activity class, Fragment class, then the milliseconds since process
+ * start of each milestone, or since the Application has been created if process start is not known. Missing
+ * milestones are written as <code>-</code>.
+ * 
+ * @author Floern
+ */
+public final class StartupProfiler {
+	
+	private static final String TAG = "StartupProfiler";
+	
+	public static final int PROCESS_START = 0;
+	public static final int APPLICATION_CREATED = 1;
+	public static final int ACTIVITY_CREATE = 2;
+	public static final int ACTIVITY_START = 3;
+	public static final int ACTIVITY_RESUME = 4;
+	public static final int FRAGMENT_SHOW = 5;
+	public static final int FIRST_FRAME = 6;
+	
+	private static final String[] MILESTONE_NAMES = {
+			"process_start", "application_created", "activity_create", "activity_start", "activity_resume",
+			"fragment_show", "first_frame" };
+	
+	/** timestamps of {@link SystemClock#elapsedRealtime()}, 0 if not recorded */
+	private static final long[] timestamps = new long[MILESTONE_NAMES.length];
+	
+	/** the Activity being launched, null before the launch and after it completed */
+	private static Activity launchingActivity;
+	
+	private static String activityName;
+	
+	private static String fragmentName;
+	
+	private static boolean completed;
+	
+	private static File outputFile;
+	
+	
+	static {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+			timestamps[PROCESS_START] = getProcessStart();
+		}
+	}
+	
+	
+	private StartupProfiler() {
+	}
+	
+	
+	@TargetApi(Build.VERSION_CODES.N)
+	private static long getProcessStart() {
+		return Process.getStartElapsedRealtime();
+	}
+	
+	
+	/**
+	 * Mark the end of <code>Application.onCreate()</code>.
+	 */
+	public static void markApplicationCreated() {
+		mark(APPLICATION_CREATED);
+	}
+	
+	
+	/**
+	 * Set the file the launch breakdown is appended to. The file is written in the background when the launch
+	 * completes, or immediately if it completed already.
+	 * @param file The output file, or null to disable.
+	 */
+	public static void setOutputFile(File file) {
+		outputFile = file;
+		if (completed && file != null) {
+			writeLaunch(file, formatLaunch());
+		}
+	}
+	
+	
+	/**
+	 * Check whether the launch has completed, i.e. the first frame has been drawn.
+	 * @return true if completed
+	 */
+	public static boolean isCompleted() {
+		return completed;
+	}
+	
+	
+	/**
+	 * Get the time of a milestone of the launch.
+	 * @param milestone One of the milestone constants, e.g. {@link #FIRST_FRAME}
+	 * @return Time in milliseconds of {@link SystemClock#elapsedRealtime()}, 0 if not recorded.
+	 */
+	public static long getTimestamp(int milestone) {
+		return timestamps[milestone];
+	}
+	
+	
+	/**
+	 * Get the breakdown of the launch, formatted like the lines of the output file.
+	 * @return The launch breakdown
+	 */
+	public static String getLaunch() {
+		return formatLaunch();
+	}
+	
+	
+	private static void mark(int milestone) {
+		if (!completed && timestamps[milestone] == 0) {
+			timestamps[milestone] = SystemClock.elapsedRealtime();
+		}
+	}
+	
+	
+	static void onActivityCreate(Activity activity) {
+		if (completed) {
+			return;
+		}
+		if (launchingActivity == null) {
+			launchingActivity = activity;
+			activityName = activity.getClass().getName();
+			mark(ACTIVITY_CREATE);
+		}
+	}
+	
+	
+	static void onActivityStart(Activity activity) {
+		if (activity == launchingActivity) {
+			mark(ACTIVITY_START);
+		}
+	}
+	
+	
+	static void onActivityResume(Activity activity) {
+		if (activity != launchingActivity || timestamps[ACTIVITY_RESUME] != 0) {
+			return;
+		}
+		mark(ACTIVITY_RESUME);
+		final View decorView = activity.getWindow().getDecorView();
+		decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+			@Override
+			public boolean onPreDraw() {
+				decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+				onFirstFrame();
+				return true;
+			}
+		});
+	}
+	
+	
+	static void onFragmentShow(Fragment fragment) {
+		if (!completed && fragment.getActivity() == launchingActivity && timestamps[FRAGMENT_SHOW] == 0) {
+			fragmentName = fragment.getClass().getName();
+			mark(FRAGMENT_SHOW);
+		}
+	}
+	
+	
+	static void onActivityDestroy(Activity activity) {
+		if (activity == launchingActivity && !completed) {
+			// hand the launch over to the next Activity
+			launchingActivity = null;
+			fragmentName = null;
+			for (int i = ACTIVITY_CREATE; i < timestamps.length; ++i) {
+				timestamps[i] = 0;
+			}
+		}
+	}
+	
+	
+	private static void onFirstFrame() {
+		if (completed || launchingActivity == null) {
+			return;
+		}
+		mark(FIRST_FRAME);
+		completed = true;
+		launchingActivity = null;
+		
+		String launch = formatLaunch();
+		Log.i(TAG, launch);
+		if (outputFile != null) {
+			writeLaunch(outputFile, launch);
+		}
+	}
+	
+	
+	private static String formatLaunch() {
+		long origin = timestamps[PROCESS_START] != 0 ? timestamps[PROCESS_START] : timestamps[APPLICATION_CREATED];
+		StringBuilder line = new StringBuilder();
+		line.append(System.currentTimeMillis())
+				.append('\t').append(activityName != null ? activityName : "-")
+				.append('\t').append(fragmentName != null ? fragmentName : "-");
+		for (long timestamp : timestamps) {
+			line.append('\t');
+			if (timestamp != 0 && origin != 0) {
+				line.append(timestamp - origin);
+			}
+			else {
+				line.append('-');
+			}
+		}
+		return line.toString();
+	}
+	
+	
+	private static void writeLaunch(final File file, final String launch) {
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					boolean header = !file.exists() || file.length() == 0;
+					Writer writer = new FileWriter(file, true);
+					try {
+						if (header) {
+							writer.write(formatHeader());
+						}
+						writer.write(launch);
+						writer.write('\n');
+					}
+					finally {
+						writer.close();
+					}
+				}
+				catch (IOException e) {
+					Log.w(TAG, "launch could not be written to " + file, e);
+				}
+			}
+		}, TAG).start();
+	}
+	
+	
+	private static String formatHeader() {
+		StringBuilder header = new StringBuilder("# time\tactivity\tfragment");
+		for (String name : MILESTONE_NAMES) {
+			header.append('\t').append(name);
+		}
+		return header.append('\n').toString();
+	}
+	
+}
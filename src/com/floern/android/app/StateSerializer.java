@@ -0,0 +1,107 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.floern.android.util.BundleSnapshot;
+import com.floern.android.util.FrozenBundle;
+
+/**
+ * Writes and reads Fragment state snapshots on a single background thread. Since all tasks run in order, a read
+ * always sees the preceding write of the same file.
+ * 
+ * @author Floern
+ */
+final class StateSerializer {
+	
+	private static final String TAG = "StateSerializer";
+	
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					runnable.run();
+				}
+			}, "StateSerializer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	
+	private StateSerializer() {
+	}
+	
+	
+	/**
+	 * Write a snapshot in the background. The file is replaced atomically, if writing fails the previous snapshot is 
+	 * kept, and a snapshot that is still being read stays readable.
+	 * @param state The state to write
+	 * @param file The target file
+	 */
+	static void write(final FrozenBundle state, final File file) {
+		EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					file.getParentFile().mkdirs();
+					BundleSnapshot.write(state.toBundle(), file, true);
+				}
+				catch (IOException e) {
+					Log.w(TAG, "Fragment state could not be written to " + file, e);
+				}
+			}
+		});
+	}
+	
+	
+	/**
+	 * Open a snapshot in the background, after all pending writes.
+	 * @param file The snapshot file
+	 * @param classLoader The ClassLoader to instantiate Parcelables
+	 * @return The snapshot, or null if it could not be read
+	 */
+	static Future<BundleSnapshot> open(final File file, final ClassLoader classLoader) {
+		return EXECUTOR.submit(new Callable<BundleSnapshot>() {
+			@Override
+			public BundleSnapshot call() {
+				try {
+					return BundleSnapshot.open(file, classLoader);
+				}
+				catch (IOException e) {
+					Log.w(TAG, "Fragment state could not be read from " + file, e);
+					return null;
+				}
+			}
+		});
+	}
+	
+	
+	/**
+	 * Delete a snapshot file in the background, after all pending writes.
+	 * @param file The snapshot file
+	 */
+	static void delete(final File file) {
+		EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				file.delete();
+			}
+		});
+	}
+	
+}
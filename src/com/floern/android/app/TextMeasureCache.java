@@ -0,0 +1,114 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Paint;
+import android.support.v4.util.LruCache;
+
+/**
+ * An LRU cache of measured text widths, shared by the Fragments of an Activity.
+ * <p>
+ * Entries are keyed by the identity of the Paint, so only Paints that are not modified after measuring, e.g. those of 
+ * the {@link PaintCache}, must be used. To be used on the main thread.
+ * 
+ * @author Floern
+ * @see Activity#getTextMeasureCache()
+ */
+public class TextMeasureCache implements ResourcePool {
+	
+	public static final int DEFAULT_MAX_ENTRIES = 512;
+	
+	private final LruCache<Key, Float> widths;
+	
+	/** reused for lookups */
+	private final Key lookupKey = new Key(null, null);
+	
+	
+	private static final class Key {
+		
+		Paint paint;
+		
+		String text;
+		
+		
+		Key(Paint paint, String text) {
+			this.paint = paint;
+			this.text = text;
+		}
+		
+		
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) o;
+			return paint == key.paint && text.equals(key.text);
+		}
+		
+		
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(paint) + text.hashCode();
+		}
+		
+	}
+	
+	
+	/**
+	 * Create a TextMeasureCache with the default size.
+	 */
+	public TextMeasureCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+	
+	
+	/**
+	 * Create a TextMeasureCache.
+	 * @param maxEntries Maximum number of cached widths
+	 */
+	public TextMeasureCache(int maxEntries) {
+		widths = new LruCache<>(maxEntries);
+	}
+	
+	
+	/**
+	 * Get the width of a text, measured only on the first call for the same Paint and text.
+	 * @param paint The Paint to measure with, must not be modified afterwards.
+	 * @param text The text
+	 * @return Width of the text
+	 * @see Paint#measureText(String)
+	 */
+	public float measureText(Paint paint, String text) {
+		lookupKey.paint = paint;
+		lookupKey.text = text;
+		Float width = widths.get(lookupKey);
+		lookupKey.paint = null;
+		lookupKey.text = null;
+		if (width == null) {
+			width = paint.measureText(text);
+			widths.put(new Key(paint, text), width);
+		}
+		return width;
+	}
+	
+	
+	@Override
+	public void trim(int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			clear();
+		}
+		else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+			widths.trimToSize(widths.maxSize() / 2);
+		}
+	}
+	
+	
+	@Override
+	public void clear() {
+		widths.evictAll();
+	}
+	
+}
@@ -0,0 +1,136 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import android.content.ComponentCallbacks2;
+import android.util.SparseArray;
+import android.view.View;
+
+/**
+ * A size-bounded pool of inflated layouts, keyed by layout resource ID, to share inflated views between Fragment 
+ * instances of the same Activity.
+ * <p>
+ * Views are released while they may still be attached to their parent, e.g. during a Fragment's exit animation. 
+ * Such views are only handed out again once they have been detached.
+ * 
+ * @author Floern
+ * @see Fragment#inflateRecycled(int, android.view.ViewGroup)
+ */
+public class ViewPool implements ResourcePool {
+	
+	public static final int DEFAULT_MAX_VIEWS_PER_LAYOUT = 3;
+	
+	public static final int DEFAULT_MAX_VIEWS = 12;
+	
+	private final SparseArray<ArrayDeque<View>> pool = new SparseArray<>();
+	
+	private final int maxViewsPerLayout;
+	
+	private final int maxViews;
+	
+	private int size;
+	
+	
+	/**
+	 * Create a ViewPool with the default bounds.
+	 */
+	public ViewPool() {
+		this(DEFAULT_MAX_VIEWS_PER_LAYOUT, DEFAULT_MAX_VIEWS);
+	}
+	
+	
+	/**
+	 * Create a ViewPool.
+	 * @param maxViewsPerLayout Maximum number of pooled views per layout resource.
+	 * @param maxViews Maximum number of pooled views in total.
+	 */
+	public ViewPool(int maxViewsPerLayout, int maxViews) {
+		this.maxViewsPerLayout = maxViewsPerLayout;
+		this.maxViews = maxViews;
+	}
+	
+	
+	/**
+	 * Take a detached view of the given layout out of the pool.
+	 * @param layoutResId Layout resource ID
+	 * @return A view, or null if there is no detached view of that layout in the pool.
+	 */
+	public View acquire(int layoutResId) {
+		ArrayDeque<View> views = pool.get(layoutResId);
+		if (views == null) {
+			return null;
+		}
+		for (Iterator<View> iterator = views.iterator(); iterator.hasNext(); ) {
+			View view = iterator.next();
+			if (view.getParent() == null) {
+				iterator.remove();
+				--size;
+				return view;
+			}
+		}
+		return null;
+	}
+	
+	
+	/**
+	 * Put a view of the given layout into the pool.
+	 * @param layoutResId Layout resource ID the view has been inflated from
+	 * @param view The view, must not be used by the caller anymore.
+	 * @return true if the view has been pooled, false if the pool is full.
+	 */
+	public boolean release(int layoutResId, View view) {
+		if (size >= maxViews) {
+			return false;
+		}
+		ArrayDeque<View> views = pool.get(layoutResId);
+		if (views == null) {
+			views = new ArrayDeque<>(maxViewsPerLayout);
+			pool.put(layoutResId, views);
+		}
+		if (views.size() >= maxViewsPerLayout) {
+			return false;
+		}
+		views.addFirst(view);
+		++size;
+		return true;
+	}
+	
+	
+	@Override
+	public void trim(int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			clear();
+		}
+		else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+			// keep only the most recently released view of each layout
+			for (int i = 0; i < pool.size(); ++i) {
+				ArrayDeque<View> views = pool.valueAt(i);
+				while (views.size() > 1) {
+					views.removeLast();
+					--size;
+				}
+			}
+		}
+	}
+	
+	
+	@Override
+	public void clear() {
+		pool.clear();
+		size = 0;
+	}
+	
+	
+	/**
+	 * Get the number of pooled views.
+	 * @return Number of views
+	 */
+	public int size() {
+		return size;
+	}
+	
+}
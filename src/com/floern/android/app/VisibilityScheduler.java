@@ -0,0 +1,340 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.app;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Schedules work on the main thread depending on the visibility of a Fragment.
+ * <p>
+ * While the Fragment is hidden, posted tasks are deferred until it is shown again, and periodic tasks are either paused
+ * ({@link #POLICY_PAUSE}) or run at a lower rate ({@link #POLICY_THROTTLE}). All work is cancelled when the Fragment is
+ * destroyed.<br>
+ * Must only be used on the main thread.
+ * 
+ * @author Floern
+ * @see Fragment#getVisibilityScheduler()
+ */
+public class VisibilityScheduler {
+	
+	/** Hidden policy: periodic tasks are paused while hidden */
+	public static final int POLICY_PAUSE = 0;
+	
+	/** Hidden policy: periodic tasks run at a throttled rate while hidden */
+	public static final int POLICY_THROTTLE = 1;
+	
+	private final Handler handler = new Handler(Looper.getMainLooper());
+	
+	/** tasks waiting for the Fragment to be shown */
+	private final ArrayList<Runnable> deferredTasks = new ArrayList<>();
+	
+	private final ArrayList<DelayedTask> delayedTasks = new ArrayList<>();
+	
+	private final ArrayList<PeriodicTask> periodicTasks = new ArrayList<>();
+	
+	private boolean visible;
+	
+	private boolean destroyed;
+	
+	private int hiddenPolicy = POLICY_PAUSE;
+	
+	private int throttleFactor = 4;
+	
+	private int executedCount;
+	
+	private int deferredCount;
+	
+	private int suppressedCount;
+	
+	private int droppedCount;
+	
+	
+	VisibilityScheduler(boolean visible) {
+		this.visible = visible;
+	}
+	
+	
+	/**
+	 * Set how periodic tasks are treated while the Fragment is hidden.
+	 * @param policy {@link #POLICY_PAUSE} or {@link #POLICY_THROTTLE}
+	 * @param throttleFactor Factor by which the period is extended with {@link #POLICY_THROTTLE}.
+	 */
+	public void setHiddenPolicy(int policy, int throttleFactor) {
+		if (policy != POLICY_PAUSE && policy != POLICY_THROTTLE) {
+			throw new IllegalArgumentException("unknown policy: " + policy);
+		}
+		if (throttleFactor < 1) {
+			throw new IllegalArgumentException("throttleFactor must be at least 1: " + throttleFactor);
+		}
+		this.hiddenPolicy = policy;
+		this.throttleFactor = throttleFactor;
+	}
+	
+	
+	/**
+	 * Run a task as soon as the Fragment is visible.
+	 * @param task The task
+	 */
+	public void post(Runnable task) {
+		if (destroyed) {
+			++droppedCount;
+			return;
+		}
+		if (visible) {
+			handler.post(new DelayedTask(task));
+		}
+		else {
+			deferredTasks.add(task);
+			++deferredCount;
+		}
+	}
+	
+	
+	/**
+	 * Run a task after a delay, or as soon as the Fragment is visible again if it's hidden by then.
+	 * @param task The task
+	 * @param delayMillis Delay in milliseconds
+	 */
+	public void postDelayed(Runnable task, long delayMillis) {
+		if (destroyed) {
+			++droppedCount;
+			return;
+		}
+		handler.postDelayed(new DelayedTask(task), delayMillis);
+	}
+	
+	
+	/**
+	 * Run a task periodically while the Fragment is visible, the first run happens after one period.
+	 * @param task The task
+	 * @param periodMillis Period in milliseconds
+	 */
+	public void schedulePeriodic(Runnable task, long periodMillis) {
+		if (periodMillis <= 0) {
+			throw new IllegalArgumentException("periodMillis must be positive: " + periodMillis);
+		}
+		if (destroyed) {
+			++droppedCount;
+			return;
+		}
+		PeriodicTask periodicTask = new PeriodicTask(task, periodMillis);
+		periodicTasks.add(periodicTask);
+		if (visible) {
+			periodicTask.schedule(periodMillis);
+		}
+		else {
+			periodicTask.hide();
+		}
+	}
+	
+	
+	/**
+	 * Cancel all pending and periodic runs of a task.
+	 * @param task The task
+	 */
+	public void cancel(Runnable task) {
+		while (deferredTasks.remove(task)) {
+			// remove all occurrences
+		}
+		for (Iterator<DelayedTask> iterator = delayedTasks.iterator(); iterator.hasNext(); ) {
+			DelayedTask delayedTask = iterator.next();
+			if (delayedTask.task == task) {
+				handler.removeCallbacks(delayedTask);
+				iterator.remove();
+			}
+		}
+		for (Iterator<PeriodicTask> iterator = periodicTasks.iterator(); iterator.hasNext(); ) {
+			PeriodicTask periodicTask = iterator.next();
+			if (periodicTask.task == task) {
+				handler.removeCallbacks(periodicTask);
+				iterator.remove();
+			}
+		}
+	}
+	
+	
+	/**
+	 * The Fragment got visible: run deferred tasks and resume periodic tasks.
+	 */
+	void onShow() {
+		if (destroyed || visible) {
+			return;
+		}
+		visible = true;
+		
+		for (Runnable task : deferredTasks) {
+			handler.post(new DelayedTask(task));
+		}
+		deferredTasks.clear();
+		
+		for (PeriodicTask periodicTask : periodicTasks) {
+			periodicTask.show();
+		}
+	}
+	
+	
+	/**
+	 * The Fragment has been hidden: pause or throttle periodic tasks.
+	 */
+	void onHide() {
+		if (destroyed || !visible) {
+			return;
+		}
+		visible = false;
+		
+		for (PeriodicTask periodicTask : periodicTasks) {
+			periodicTask.hide();
+		}
+	}
+	
+	
+	/**
+	 * The Fragment has been destroyed: cancel all work.
+	 */
+	void destroy() {
+		destroyed = true;
+		handler.removeCallbacksAndMessages(null);
+		droppedCount += deferredTasks.size();
+		deferredTasks.clear();
+		delayedTasks.clear();
+		periodicTasks.clear();
+	}
+	
+	
+	/**
+	 * Get the number of task runs that have been executed, including periodic runs.
+	 * @return Number of executed runs
+	 */
+	public int getExecutedCount() {
+		return executedCount;
+	}
+	
+	
+	/**
+	 * Get the number of tasks that have been deferred because the Fragment was hidden.
+	 * @return Number of deferred tasks
+	 */
+	public int getDeferredCount() {
+		return deferredCount;
+	}
+	
+	
+	/**
+	 * Get the number of periodic runs that have been skipped or saved by throttling while the Fragment was hidden.
+	 * @return Number of suppressed runs
+	 */
+	public int getSuppressedCount() {
+		return suppressedCount;
+	}
+	
+	
+	/**
+	 * Get the number of tasks that have been dropped because the Fragment has been destroyed.
+	 * @return Number of dropped tasks
+	 */
+	public int getDroppedCount() {
+		return droppedCount;
+	}
+	
+	
+	/**
+	 * A one-shot task, deferred if the Fragment is hidden when it's due.
+	 */
+	private class DelayedTask implements Runnable {
+		
+		final Runnable task;
+		
+		DelayedTask(Runnable task) {
+			this.task = task;
+			delayedTasks.add(this);
+		}
+		
+		@Override
+		public void run() {
+			delayedTasks.remove(this);
+			if (visible) {
+				++executedCount;
+				task.run();
+			}
+			else {
+				deferredTasks.add(task);
+				++deferredCount;
+			}
+		}
+	}
+	
+	
+	/**
+	 * A periodic task, paused or throttled while the Fragment is hidden.
+	 */
+	private class PeriodicTask implements Runnable {
+		
+		final Runnable task;
+		
+		final long periodMillis;
+		
+		/** time the Fragment has been hidden, for the statistics */
+		long hiddenSince;
+		
+		/** time of the last run, or of the creation */
+		long lastRunAt;
+		
+		PeriodicTask(Runnable task, long periodMillis) {
+			this.task = task;
+			this.periodMillis = periodMillis;
+			this.lastRunAt = SystemClock.uptimeMillis();
+		}
+		
+		void schedule(long delayMillis) {
+			handler.removeCallbacks(this);
+			handler.postDelayed(this, delayMillis);
+		}
+		
+		void show() {
+			long now = SystemClock.uptimeMillis();
+			if (hiddenPolicy == POLICY_PAUSE) {
+				suppressedCount += (now - hiddenSince) / periodMillis;
+			}
+			// resume with the regular period, overdue runs happen right away
+			schedule(Math.max(0, lastRunAt + periodMillis - now));
+		}
+		
+		void hide() {
+			hiddenSince = SystemClock.uptimeMillis();
+			if (hiddenPolicy == POLICY_PAUSE) {
+				handler.removeCallbacks(this);
+			}
+			else {
+				schedule(periodMillis * throttleFactor);
+			}
+		}
+		
+		@Override
+		public void run() {
+			if (!visible && hiddenPolicy == POLICY_PAUSE) {
+				return;
+			}
+			lastRunAt = SystemClock.uptimeMillis();
+			++executedCount;
+			task.run();
+			if (!periodicTasks.contains(this)) {
+				// cancelled by the task itself
+				return;
+			}
+			if (visible) {
+				schedule(periodMillis);
+			}
+			else {
+				suppressedCount += throttleFactor - 1;
+				schedule(periodMillis * throttleFactor);
+			}
+		}
+	}
+	
+}
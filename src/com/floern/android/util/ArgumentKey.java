@@ -0,0 +1,220 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A typed key descriptor for a Bundle value, e.g. a Fragment argument.
+ * <p>
+ * Every key gets a unique index, which allows decoded values to be cached in a plain array instead of a map.
+ * Keys are meant to be constants:
+ * <pre>
+ * static final ArgumentKey&lt;Integer&gt; ARG_ID = ArgumentKey.ofInt("id", 0);
+ * </pre>
+ *
+ * @param <T> the value type
+ * @author Floern
+ * @see BundleBuilder#put(ArgumentKey, Object)
+ */
+public abstract class ArgumentKey<T> {
+
+	private static final AtomicInteger nextIndex = new AtomicInteger();
+
+	private final String name;
+
+	private final int index;
+
+
+	/**
+	 * Create a new key.
+	 *
+	 * @param name the key's name in the Bundle
+	 */
+	protected ArgumentKey(String name) {
+		this.name = name;
+		this.index = nextIndex.getAndIncrement();
+	}
+
+
+	/**
+	 * Get the key's name in the Bundle.
+	 *
+	 * @return the name
+	 */
+	public final String getName() {
+		return name;
+	}
+
+
+	/**
+	 * Get the unique index of this key.
+	 *
+	 * @return the index, starting at 0
+	 */
+	public final int getIndex() {
+		return index;
+	}
+
+
+	/**
+	 * Read the value from a Bundle.
+	 *
+	 * @param bundle a Bundle
+	 * @return the value, or the default value if the Bundle doesn't contain the key
+	 */
+	public abstract T read(Bundle bundle);
+
+
+	/**
+	 * Convert a value into the representation stored in the Bundle.
+	 * May be overridden by a subclass, the default implementation stores the value as is.
+	 *
+	 * @param value the value
+	 * @return the value to store
+	 */
+	protected Object toBundleValue(T value) {
+		return value;
+	}
+
+
+	/**
+	 * Write the value into a Bundle.
+	 *
+	 * @param bundle a Bundle
+	 * @param value the value
+	 */
+	public final void write(Bundle bundle, T value) {
+		BundleValues.put(bundle, name, toBundleValue(value));
+	}
+
+
+	/**
+	 * Create a key for a String value.
+	 *
+	 * @param name the key's name
+	 * @return an ArgumentKey
+	 */
+	public static ArgumentKey<String> ofString(String name) {
+		return new ArgumentKey<String>(name) {
+			@Override
+			public String read(Bundle bundle) {
+				return bundle.getString(getName());
+			}
+		};
+	}
+
+
+	/**
+	 * Create a key for an int value.
+	 *
+	 * @param name the key's name
+	 * @param defaultValue value if the key does not exist
+	 * @return an ArgumentKey
+	 */
+	public static ArgumentKey<Integer> ofInt(String name, final int defaultValue) {
+		return new ArgumentKey<Integer>(name) {
+			@Override
+			public Integer read(Bundle bundle) {
+				return bundle.getInt(getName(), defaultValue);
+			}
+		};
+	}
+
+
+	/**
+	 * Create a key for a long value.
+	 *
+	 * @param name the key's name
+	 * @param defaultValue value if the key does not exist
+	 * @return an ArgumentKey
+	 */
+	public static ArgumentKey<Long> ofLong(String name, final long defaultValue) {
+		return new ArgumentKey<Long>(name) {
+			@Override
+			public Long read(Bundle bundle) {
+				return bundle.getLong(getName(), defaultValue);
+			}
+		};
+	}
+
+
+	/**
+	 * Create a key for a boolean value.
+	 *
+	 * @param name the key's name
+	 * @param defaultValue value if the key does not exist
+	 * @return an ArgumentKey
+	 */
+	public static ArgumentKey<Boolean> ofBoolean(String name, final boolean defaultValue) {
+		return new ArgumentKey<Boolean>(name) {
+			@Override
+			public Boolean read(Bundle bundle) {
+				return bundle.getBoolean(getName(), defaultValue);
+			}
+		};
+	}
+
+
+	/**
+	 * Create a key for a Parcelable value.
+	 *
+	 * @param name the key's name
+	 * @return an ArgumentKey
+	 */
+	public static <T extends Parcelable> ArgumentKey<T> ofParcelable(String name) {
+		return new ArgumentKey<T>(name) {
+			@Override
+			public T read(Bundle bundle) {
+				return bundle.getParcelable(getName());
+			}
+		};
+	}
+
+
+	/**
+	 * Create a key for a Serializable value.
+	 *
+	 * @param name the key's name
+	 * @return an ArgumentKey
+	 */
+	public static <T extends Serializable> ArgumentKey<T> ofSerializable(String name) {
+		return new ArgumentKey<T>(name) {
+			@Override
+			@SuppressWarnings("unchecked")
+			public T read(Bundle bundle) {
+				return (T) bundle.getSerializable(getName());
+			}
+		};
+	}
+
+
+	/**
+	 * Create a key for a model object marshalled by a {@link ParcelCodec}.
+	 *
+	 * @param name the key's name
+	 * @param codec the ParcelCodec of the model type
+	 * @return an ArgumentKey
+	 * @throws IllegalArgumentException if the codec class cannot be instantiated by name, see {@link ParcelCodec}
+	 */
+	public static <T> ArgumentKey<T> ofModel(String name, final ParcelCodec<T> codec) {
+		ModelValue.checkCodec(codec.getClass());
+		return new ArgumentKey<T>(name) {
+			@Override
+			public T read(Bundle bundle) {
+				return BundleReader.getModel(bundle, getName());
+			}
+
+			@Override
+			protected Object toBundleValue(T value) {
+				return new ModelValue<>(value, codec);
+			}
+		};
+	}
+
+}
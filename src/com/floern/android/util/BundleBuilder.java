@@ -1,466 +1,1291 @@
-/*
- * Floern, dev@floern.com, 2016, MIT Licence
- */
-package com.floern.android.util;
-
-import android.annotation.TargetApi;
-import android.os.Build;
-import android.os.Bundle;
-import android.os.Parcelable;
-import android.util.Size;
-import android.util.SizeF;
-import android.util.SparseArray;
-
-import java.io.Serializable;
-import java.util.ArrayList;
-
-/**
- * A utility class to create a <code>Bundle</code> using the builder pattern.
- *
- * @author Floern
- */
-public class BundleBuilder {
-
-	private final Bundle bundle;
-
-
-	/**
-	 * Create a new BundleBuilder based on an empty Bundle.
-	 */
-	public BundleBuilder() {
-		bundle = new Bundle();
-	}
-
-
-	/**
-	 * Wrap a BundleBuilder around an existing Bundle.
-	 * The values will be inserted into the provided Bundle.
-	 *
-	 * @param source a Bundle
-	 */
-	public BundleBuilder(Bundle source) {
-		bundle = source;
-	}
-
-
-	/**
-	 * Inserts all mappings from the given Bundle into this Bundle.
-	 *
-	 * @param map a Bundle
-	 */
-	public BundleBuilder putAll(Bundle map) {
-		bundle.putAll(map);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a Boolean value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
-	 * value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a Boolean, or null
-	 */
-	public BundleBuilder putBoolean(String key, boolean value) {
-		bundle.putBoolean(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a byte value into the mapping of this Bundle, replacing any existing value for the given key.
-	 *
-	 * @param key a String, or null
-	 * @param value a byte
-	 */
-	public BundleBuilder putByte(String key, byte value) {
-		bundle.putByte(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a char value into the mapping of this Bundle, replacing any existing value for the given key.
-	 *
-	 * @param key a String, or null
-	 * @param value a char, or null
-	 */
-	public BundleBuilder putChar(String key, char value) {
-		bundle.putChar(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a short value into the mapping of this Bundle, replacing any existing value for the given key.
-	 *
-	 * @param key a String, or null
-	 * @param value a short
-	 */
-	public BundleBuilder putShort(String key, short value) {
-		bundle.putShort(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts an int value into the mapping of this Bundle, replacing any existing value for the given key.
-	 *
-	 * @param key a String, or null
-	 * @param value an int, or null
-	 */
-	public BundleBuilder putInt(String key, int value) {
-		bundle.putInt(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a long value into the mapping of this Bundle, replacing any existing value for the given key.
-	 *
-	 * @param key a String, or null
-	 * @param value a long
-	 */
-	public BundleBuilder putLong(String key, long value) {
-		bundle.putLong(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a float value into the mapping of this Bundle, replacing any existing value for the given key.
-	 *
-	 * @param key a String, or null
-	 * @param value a float
-	 */
-	public BundleBuilder putFloat(String key, float value) {
-		bundle.putFloat(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a double value into the mapping of this Bundle, replacing any existing value for the given key.
-	 *
-	 * @param key a String, or null
-	 * @param value a double
-	 */
-	public BundleBuilder putDouble(String key, double value) {
-		bundle.putDouble(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a String value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
-	 * value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a String, or null
-	 */
-	public BundleBuilder putString(String key, String value) {
-		bundle.putString(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a CharSequence value into the mapping of this Bundle, replacing any existing value for the given key. Either key
-	 * or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a CharSequence, or null
-	 */
-	public BundleBuilder putCharSequence(String key, CharSequence value) {
-		bundle.putCharSequence(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a Parcelable value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
-	 * value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a Parcelable object, or null
-	 */
-	public BundleBuilder putParcelable(String key, Parcelable value) {
-		bundle.putParcelable(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts an array of Parcelable values into the mapping of this Bundle, replacing any existing value for the given key.
-	 * Either key or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value an array of Parcelable objects, or null
-	 */
-	public BundleBuilder putParcelableArray(String key, Parcelable[] value) {
-		bundle.putParcelableArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a List of Parcelable values into the mapping of this Bundle, replacing any existing value for the given key.
-	 * Either key or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value an ArrayList of Parcelable objects, or null
-	 */
-	public BundleBuilder putParcelableArrayList(String key, ArrayList<? extends Parcelable> value) {
-		bundle.putParcelableArrayList(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a SparceArray of Parcelable values into the mapping of this Bundle, replacing any existing value for the given
-	 * key. Either key or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a SparseArray of Parcelable objects, or null
-	 */
-	public BundleBuilder putSparseParcelableArray(String key, SparseArray<? extends Parcelable> value) {
-		bundle.putSparseParcelableArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts an ArrayList<Integer> value into the mapping of this Bundle, replacing any existing value for the given key.
-	 * Either key or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value an ArrayList<Integer> object, or null
-	 */
-	public BundleBuilder putIntegerArrayList(String key, ArrayList<Integer> value) {
-		bundle.putIntegerArrayList(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts an ArrayList<String> value into the mapping of this Bundle, replacing any existing value for the given key.
-	 * Either key or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value an ArrayList<String> object, or null
-	 */
-	public BundleBuilder putStringArrayList(String key, ArrayList<String> value) {
-		bundle.putStringArrayList(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts an ArrayList<CharSequence> value into the mapping of this Bundle, replacing any existing value for the given key.
-	 * Either key or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value an ArrayList<CharSequence> object, or null
-	 */
-	public BundleBuilder putCharSequenceArrayList(String key, ArrayList<CharSequence> value) {
-		bundle.putCharSequenceArrayList(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a Serializable value into the mapping of this Bundle, replacing any existing value for the given key. Either key
-	 * or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a Serializable object, or null
-	 */
-	public BundleBuilder putSerializable(String key, Serializable value) {
-		bundle.putSerializable(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a boolean array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
-	 * or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a boolean array object, or null
-	 */
-	public BundleBuilder putBooleanArray(String key, boolean[] value) {
-		bundle.putBooleanArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a byte array value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
-	 * value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a byte array object, or null
-	 */
-	public BundleBuilder putByteArray(String key, byte[] value) {
-		bundle.putByteArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a short array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
-	 * or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a short array object, or null
-	 */
-	public BundleBuilder putShortArray(String key, short[] value) {
-		bundle.putShortArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a char array value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
-	 * value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a char array object, or null
-	 */
-	public BundleBuilder putCharArray(String key, char[] value) {
-		bundle.putCharArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts an int array value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
-	 * value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value an int array object, or null
-	 */
-	public BundleBuilder putIntArray(String key, int[] value) {
-		bundle.putIntArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a long array value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
-	 * value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a long array object, or null
-	 */
-	public BundleBuilder putLongArray(String key, long[] value) {
-		bundle.putLongArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a float array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
-	 * or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a float array object, or null
-	 */
-	public BundleBuilder putFloatArray(String key, float[] value) {
-		bundle.putFloatArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a double array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
-	 * or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a double array object, or null
-	 */
-	public BundleBuilder putDoubleArray(String key, double[] value) {
-		bundle.putDoubleArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a String array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
-	 * or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a String array object, or null
-	 */
-	public BundleBuilder putStringArray(String key, String[] value) {
-		bundle.putStringArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a CharSequence array value into the mapping of this Bundle, replacing any existing value for the given key.
-	 * Either key or value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a CharSequence array object, or null
-	 */
-	public BundleBuilder putCharSequenceArray(String key, CharSequence[] value) {
-		bundle.putCharSequenceArray(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a Size value into the mapping of this Bundle, replacing any existing value for the given key. Either key or value
-	 * may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a Size object, or null
-	 * @since API level 21
-	 */
-	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
-	public BundleBuilder putSize(String key, Size value) {
-		bundle.putSize(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a SizeF value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
-	 * value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a SizeF object, or null
-	 * @since API level 21
-	 */
-	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
-	public BundleBuilder putSizeF(String key, SizeF value) {
-		bundle.putSizeF(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Inserts a Bundle value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
-	 * value may be null.
-	 *
-	 * @param key a String, or null
-	 * @param value a Bundle object, or null
-	 */
-	public BundleBuilder putBundle(String key, Bundle value) {
-		bundle.putBundle(key, value);
-		return this;
-	}
-
-
-	/**
-	 * Get the Bundle.
-	 *
-	 * @return built Bundle instance
-	 */
-	public Bundle build() {
-		return bundle;
-	}
-
-}
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.util.Size;
+import android.util.SizeF;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A utility class to create a <code>Bundle</code> using the builder pattern.
+ *
+ * @author Floern
+ */
+public class BundleBuilder {
+
+	/** Largest recommended size of a Bundle, well below the binder transaction buffer of 1 MB */
+	public static final int RECOMMENDED_MAX_SIZE = 500 * 1024;
+
+	/** Budget policy: log a warning if the budget is exceeded */
+	public static final int BUDGET_POLICY_WARN = 0;
+
+	/** Budget policy: throw an <code>IllegalArgumentException</code> if the budget is exceeded */
+	public static final int BUDGET_POLICY_REJECT = 1;
+
+	private static final String TAG = "BundleBuilder";
+
+	private static final int NO_BUDGET = -1;
+
+	private static final int NO_SPILL = -1;
+
+	/** marks a key that didn't exist in the snapshot */
+	private static final Object ABSENT = new Object();
+
+	/** number of entries listed in a size breakdown message */
+	private static final int BREAKDOWN_ENTRIES = 10;
+
+	private final Bundle bundle;
+
+	/** template whose entries are shared, the own Bundle only holds the overwritten entries */
+	private final BundleTemplate template;
+
+	private final Map<String, Integer> entrySizes = new HashMap<>();
+
+	private int estimatedSize = ParcelSizeEstimator.BUNDLE_HEADER_SIZE;
+
+	/** false while the entries of a wrapped Bundle have not been estimated yet */
+	private boolean sourceEstimated = true;
+
+	private int sizeBudget = NO_BUDGET;
+
+	private int budgetPolicy = BUDGET_POLICY_WARN;
+
+	private int spillThreshold = NO_SPILL;
+
+	private File spillDirectory;
+
+	/** arrays spilled by this BundleBuilder that have not been handed out yet, null if there are none */
+	private List<SpilledArray> unbuiltSpills;
+
+	/** previous values of the keys written since the last snapshot, null if changes aren't tracked */
+	private Map<String, Object> changes;
+
+	/** true if this BundleBuilder has been obtained from the pool */
+	private boolean pooled;
+
+	/** true while this BundleBuilder is in the pool */
+	private boolean recycled;
+
+	/** call site of the last recycle(), only recorded with debug checks */
+	private Throwable recycledAt;
+
+	private BundleBuilder nextInPool;
+
+	private static final Object poolLock = new Object();
+
+	private static final int MAX_POOL_SIZE = 16;
+
+	private static BundleBuilder pool;
+
+	private static int poolSize;
+
+	private static volatile boolean poolDebugChecks;
+
+
+	/**
+	 * Create a new BundleBuilder based on an empty Bundle.
+	 */
+	public BundleBuilder() {
+		bundle = new Bundle();
+		template = null;
+	}
+
+
+	/**
+	 * Wrap a BundleBuilder around an existing Bundle.
+	 * The values will be inserted into the provided Bundle. The existing entries are only estimated once the size is
+	 * needed, so wrapping doesn't unparcel the Bundle.
+	 *
+	 * @param source a Bundle
+	 */
+	public BundleBuilder(Bundle source) {
+		bundle = source;
+		template = null;
+		sourceEstimated = false;
+	}
+
+
+	/**
+	 * Create a BundleBuilder that derives from a template.
+	 *
+	 * @param template a BundleTemplate
+	 * @see BundleTemplate#newBuilder()
+	 */
+	BundleBuilder(BundleTemplate template) {
+		bundle = new Bundle();
+		this.template = template;
+		estimatedSize = template.estimatedSize;
+	}
+
+
+	/**
+	 * Get a BundleBuilder with an empty Bundle from the pool, or create a new one if the pool is empty.
+	 * <p>
+	 * The caller owns the BundleBuilder and its Bundle until {@link #recycle()} is called. After that, neither the
+	 * BundleBuilder nor the built Bundle may be used anymore, since both will be reused for another payload. Recycle only
+	 * once the Bundle has been fully consumed, e.g. in <code>Handler.handleMessage()</code> rather than after
+	 * <code>Handler.sendMessage()</code>.
+	 *
+	 * @return an empty BundleBuilder
+	 */
+	public static BundleBuilder obtain() {
+		synchronized (poolLock) {
+			if (pool != null) {
+				BundleBuilder builder = pool;
+				pool = builder.nextInPool;
+				builder.nextInPool = null;
+				builder.recycled = false;
+				builder.recycledAt = null;
+				--poolSize;
+				return builder;
+			}
+		}
+		BundleBuilder builder = new BundleBuilder();
+		builder.pooled = true;
+		return builder;
+	}
+
+
+	/**
+	 * Clear this BundleBuilder and its Bundle and return it to the pool.
+	 * Spilled arrays that have never been handed out by {@link #build()} are released.
+	 *
+	 * @throws IllegalStateException if this BundleBuilder has not been obtained from the pool or has already been recycled
+	 * @see #obtain()
+	 */
+	public void recycle() {
+		if (!pooled) {
+			throw new IllegalStateException("only a BundleBuilder from obtain() can be recycled");
+		}
+		checkNotRecycled();
+
+		if (unbuiltSpills != null) {
+			// the Bundle has never been built since these were spilled, nobody else can release them
+			for (SpilledArray spilled : unbuiltSpills) {
+				spilled.release();
+			}
+			unbuiltSpills = null;
+		}
+		bundle.clear();
+		entrySizes.clear();
+		estimatedSize = ParcelSizeEstimator.BUNDLE_HEADER_SIZE;
+		sizeBudget = NO_BUDGET;
+		budgetPolicy = BUDGET_POLICY_WARN;
+		spillThreshold = NO_SPILL;
+		spillDirectory = null;
+		changes = null;
+		recycled = true;
+		if (poolDebugChecks) {
+			recycledAt = new Throwable("recycled here");
+		}
+
+		synchronized (poolLock) {
+			if (poolSize < MAX_POOL_SIZE) {
+				nextInPool = pool;
+				pool = this;
+				++poolSize;
+			}
+		}
+	}
+
+
+	/**
+	 * Enable or disable additional pool debug checks: the call site of {@link #recycle()} is recorded and reported when a
+	 * recycled BundleBuilder is used. Use of a recycled BundleBuilder is always detected.
+	 *
+	 * @param enabled true to enable the debug checks
+	 */
+	public static void setPoolDebugChecks(boolean enabled) {
+		poolDebugChecks = enabled;
+	}
+
+
+	private void checkNotRecycled() {
+		if (recycled) {
+			throw new IllegalStateException("BundleBuilder has already been recycled", recycledAt);
+		}
+	}
+
+
+	/**
+	 * Set a size budget for the marshalled Bundle. Every value that makes the estimated size exceed the budget is either
+	 * logged or rejected, together with a per-key size breakdown.<br>
+	 * Values without a fixed layout (Parcelables, Serializables, ...) are measured exactly with a Parcel dry run while a
+	 * budget is set, so the budget should be set before adding values.
+	 *
+	 * @param maxBytes maximum size in bytes, e.g. {@link #RECOMMENDED_MAX_SIZE}
+	 * @param policy {@link #BUDGET_POLICY_WARN} or {@link #BUDGET_POLICY_REJECT}
+	 */
+	public BundleBuilder setSizeBudget(int maxBytes, int policy) {
+		checkNotRecycled();
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+		}
+		if (policy != BUDGET_POLICY_WARN && policy != BUDGET_POLICY_REJECT) {
+			throw new IllegalArgumentException("unknown budget policy: " + policy);
+		}
+		sizeBudget = maxBytes;
+		budgetPolicy = policy;
+		return this;
+	}
+
+
+	/**
+	 * Get the running estimate of the marshalled size of the Bundle.
+	 *
+	 * @return estimated size in bytes
+	 * @see #measureParcelSize()
+	 */
+	public int getEstimatedSize() {
+		ensureSourceEstimated();
+		return estimatedSize;
+	}
+
+
+	/**
+	 * Get the estimated marshalled size of each entry, including its key.
+	 *
+	 * @return map of keys to sizes in bytes, ordered from the largest to the smallest entry
+	 */
+	public Map<String, Integer> getSizeBreakdown() {
+		ensureSourceEstimated();
+		Map<String, Integer> sizes = entrySizes;
+		if (template != null) {
+			sizes = new HashMap<>(template.entrySizes);
+			sizes.putAll(entrySizes);
+		}
+		List<Map.Entry<String, Integer>> entries = new ArrayList<>(sizes.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+			@Override
+			public int compare(Map.Entry<String, Integer> lhs, Map.Entry<String, Integer> rhs) {
+				return rhs.getValue().compareTo(lhs.getValue());
+			}
+		});
+		Map<String, Integer> breakdown = new LinkedHashMap<>();
+		for (Map.Entry<String, Integer> entry : entries) {
+			breakdown.put(entry.getKey(), entry.getValue());
+		}
+		return breakdown;
+	}
+
+
+	/**
+	 * Measure the exact marshalled size of the Bundle by writing it into a temporary Parcel.
+	 * This is as expensive as parceling the Bundle, use {@link #getEstimatedSize()} in hot paths.
+	 *
+	 * @return size in bytes
+	 */
+	public int measureParcelSize() {
+		return ParcelSizeEstimator.measure(template != null ? materialize() : bundle);
+	}
+
+
+	/**
+	 * Enable the spill mode: primitive arrays of at least the given size are written once out of band, to a
+	 * <code>SharedMemory</code> region on API level 27+ or to a memory-mapped temporary file otherwise, and only a
+	 * {@link SpilledArray} handle is stored in the Bundle. Such values are read through {@link BundleReader} and must be
+	 * released with {@link SpilledArray#releaseAll(Bundle)} when the Bundle is no longer needed. A spilled value that is
+	 * overwritten is released immediately, a delta or merged Bundle holds its own reference.<br>
+	 * Spilled values cannot be written into the saved instance state, Fragment arguments or Intent extras, they are
+	 * only meant for in-process hand-over and for binder IPC through AIDL or a <code>Messenger</code>.
+	 *
+	 * @param thresholdBytes minimum payload size in bytes of a spilled array
+	 * @param tempDirectory directory for temporary files, e.g. <code>Context.getCacheDir()</code>
+	 */
+	public BundleBuilder setSpillThreshold(int thresholdBytes, File tempDirectory) {
+		checkNotRecycled();
+		if (thresholdBytes <= 0) {
+			throw new IllegalArgumentException("thresholdBytes must be positive: " + thresholdBytes);
+		}
+		spillThreshold = thresholdBytes;
+		spillDirectory = tempDirectory;
+		return this;
+	}
+
+
+	/**
+	 * Start tracking the keys that are modified, with the current mappings as the snapshot to compare against.
+	 * The changes since the last snapshot are available as a delta, so repeated saves only cost as much as the changed
+	 * values.<br>
+	 * Values that are modified in place must be inserted again to be detected.
+	 *
+	 * @see #buildDelta()
+	 * @see #mergeChangesInto(Bundle)
+	 */
+	public BundleBuilder trackChanges() {
+		checkNotRecycled();
+		if (template != null) {
+			throw new IllegalStateException("changes of a BundleBuilder derived from a template cannot be tracked");
+		}
+		changes = new HashMap<>();
+		return this;
+	}
+
+
+	/**
+	 * Get the keys whose values differ from the last snapshot.
+	 *
+	 * @return set of changed keys
+	 * @throws IllegalStateException if changes aren't tracked
+	 */
+	public Set<String> getChangedKeys() {
+		checkTrackingChanges();
+		Set<String> changedKeys = new HashSet<>();
+		for (Map.Entry<String, Object> change : changes.entrySet()) {
+			if (isChanged(change.getKey(), change.getValue())) {
+				changedKeys.add(change.getKey());
+			}
+		}
+		return changedKeys;
+	}
+
+
+	/**
+	 * Create a Bundle containing only the mappings that differ from the last snapshot.
+	 * The snapshot is not changed.
+	 *
+	 * @return a new Bundle containing the changed mappings
+	 * @throws IllegalStateException if changes aren't tracked
+	 */
+	public Bundle buildDelta() {
+		checkTrackingChanges();
+		Bundle delta = new Bundle();
+		for (Map.Entry<String, Object> change : changes.entrySet()) {
+			String key = change.getKey();
+			if (isChanged(key, change.getValue())) {
+				putCopy(delta, key);
+			}
+		}
+		return delta;
+	}
+
+
+	/**
+	 * Insert the mappings that differ from the last snapshot into a persisted base Bundle, then take a new snapshot.
+	 *
+	 * @param base the persisted Bundle
+	 * @return number of mappings that have been merged
+	 * @throws IllegalStateException if changes aren't tracked
+	 */
+	public int mergeChangesInto(Bundle base) {
+		checkTrackingChanges();
+		int count = 0;
+		for (Map.Entry<String, Object> change : changes.entrySet()) {
+			String key = change.getKey();
+			if (isChanged(key, change.getValue())) {
+				putCopy(base, key);
+				++count;
+			}
+		}
+		changes.clear();
+		return count;
+	}
+
+
+	/**
+	 * Take a new snapshot of the current mappings, discarding the tracked changes.
+	 *
+	 * @throws IllegalStateException if changes aren't tracked
+	 */
+	public BundleBuilder takeSnapshot() {
+		checkTrackingChanges();
+		changes.clear();
+		return this;
+	}
+
+
+	private void checkTrackingChanges() {
+		checkNotRecycled();
+		if (changes == null) {
+			throw new IllegalStateException("changes aren't tracked, call trackChanges() first");
+		}
+	}
+
+
+	/**
+	 * Copy a mapping into another Bundle, which holds its own reference to a spilled array and releases the spilled
+	 * array it replaces.
+	 */
+	private void putCopy(Bundle target, String key) {
+		Object value = bundle.get(key);
+		Object replaced = target.get(key);
+		if (value != replaced) {
+			if (value instanceof SpilledArray) {
+				((SpilledArray) value).retain();
+			}
+			if (replaced instanceof SpilledArray) {
+				((SpilledArray) replaced).release();
+			}
+		}
+		BundleValues.put(target, key, value);
+	}
+
+
+	private boolean isChanged(String key, Object previousValue) {
+		if (previousValue == ABSENT) {
+			return bundle.containsKey(key);
+		}
+		return !bundle.containsKey(key) || !BundleValues.equal(previousValue, bundle.get(key));
+	}
+
+
+	/**
+	 * Inserts all mappings from the given Bundle into this Bundle.
+	 *
+	 * @param map a Bundle
+	 */
+	public BundleBuilder putAll(Bundle map) {
+		checkNotRecycled();
+		for (String key : map.keySet()) {
+			track(key, sizeOfOpaque(map.get(key)));
+		}
+		bundle.putAll(map);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a Boolean value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
+	 * value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a Boolean, or null
+	 */
+	public BundleBuilder putBoolean(String key, boolean value) {
+		track(key, ParcelSizeEstimator.PRIMITIVE_32_SIZE);
+		bundle.putBoolean(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a byte value into the mapping of this Bundle, replacing any existing value for the given key.
+	 *
+	 * @param key a String, or null
+	 * @param value a byte
+	 */
+	public BundleBuilder putByte(String key, byte value) {
+		track(key, ParcelSizeEstimator.PRIMITIVE_32_SIZE);
+		bundle.putByte(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a char value into the mapping of this Bundle, replacing any existing value for the given key.
+	 *
+	 * @param key a String, or null
+	 * @param value a char, or null
+	 */
+	public BundleBuilder putChar(String key, char value) {
+		track(key, ParcelSizeEstimator.PRIMITIVE_32_SIZE);
+		bundle.putChar(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a short value into the mapping of this Bundle, replacing any existing value for the given key.
+	 *
+	 * @param key a String, or null
+	 * @param value a short
+	 */
+	public BundleBuilder putShort(String key, short value) {
+		track(key, ParcelSizeEstimator.PRIMITIVE_32_SIZE);
+		bundle.putShort(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts an int value into the mapping of this Bundle, replacing any existing value for the given key.
+	 *
+	 * @param key a String, or null
+	 * @param value an int, or null
+	 */
+	public BundleBuilder putInt(String key, int value) {
+		track(key, ParcelSizeEstimator.PRIMITIVE_32_SIZE);
+		bundle.putInt(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a long value into the mapping of this Bundle, replacing any existing value for the given key.
+	 *
+	 * @param key a String, or null
+	 * @param value a long
+	 */
+	public BundleBuilder putLong(String key, long value) {
+		track(key, ParcelSizeEstimator.PRIMITIVE_64_SIZE);
+		bundle.putLong(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a float value into the mapping of this Bundle, replacing any existing value for the given key.
+	 *
+	 * @param key a String, or null
+	 * @param value a float
+	 */
+	public BundleBuilder putFloat(String key, float value) {
+		track(key, ParcelSizeEstimator.PRIMITIVE_32_SIZE);
+		bundle.putFloat(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a double value into the mapping of this Bundle, replacing any existing value for the given key.
+	 *
+	 * @param key a String, or null
+	 * @param value a double
+	 */
+	public BundleBuilder putDouble(String key, double value) {
+		track(key, ParcelSizeEstimator.PRIMITIVE_64_SIZE);
+		bundle.putDouble(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a String value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
+	 * value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a String, or null
+	 */
+	public BundleBuilder putString(String key, String value) {
+		track(key, ParcelSizeEstimator.sizeOf(value));
+		bundle.putString(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a CharSequence value into the mapping of this Bundle, replacing any existing value for the given key. Either key
+	 * or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a CharSequence, or null
+	 */
+	public BundleBuilder putCharSequence(String key, CharSequence value) {
+		track(key, ParcelSizeEstimator.sizeOf(value));
+		bundle.putCharSequence(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a Parcelable value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
+	 * value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a Parcelable object, or null
+	 */
+	public BundleBuilder putParcelable(String key, Parcelable value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putParcelable(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts an array of Parcelable values into the mapping of this Bundle, replacing any existing value for the given key.
+	 * Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value an array of Parcelable objects, or null
+	 */
+	public BundleBuilder putParcelableArray(String key, Parcelable[] value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putParcelableArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a List of Parcelable values into the mapping of this Bundle, replacing any existing value for the given key.
+	 * Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value an ArrayList of Parcelable objects, or null
+	 */
+	public BundleBuilder putParcelableArrayList(String key, ArrayList<? extends Parcelable> value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putParcelableArrayList(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a SparceArray of Parcelable values into the mapping of this Bundle, replacing any existing value for the given
+	 * key. Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a SparseArray of Parcelable objects, or null
+	 */
+	public BundleBuilder putSparseParcelableArray(String key, SparseArray<? extends Parcelable> value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putSparseParcelableArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts an ArrayList<Integer> value into the mapping of this Bundle, replacing any existing value for the given key.
+	 * Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value an ArrayList<Integer> object, or null
+	 */
+	public BundleBuilder putIntegerArrayList(String key, ArrayList<Integer> value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putIntegerArrayList(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts the remaining values of an IntBuffer into the mapping of this Bundle as an int array, replacing any existing
+	 * value for the given key. The buffer's position is not changed. Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value an IntBuffer, or null
+	 * @see BundleReader#getIntBuffer(Bundle, String)
+	 */
+	public BundleBuilder putIntBuffer(String key, IntBuffer value) {
+		int[] array = null;
+		if (value != null) {
+			array = new int[value.remaining()];
+			value.duplicate().get(array);
+		}
+		return putIntArray(key, array);
+	}
+
+
+	/**
+	 * Inserts the remaining values of a LongBuffer into the mapping of this Bundle as a long array, replacing any existing
+	 * value for the given key. The buffer's position is not changed. Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a LongBuffer, or null
+	 * @see BundleReader#getLongBuffer(Bundle, String)
+	 */
+	public BundleBuilder putLongBuffer(String key, LongBuffer value) {
+		long[] array = null;
+		if (value != null) {
+			array = new long[value.remaining()];
+			value.duplicate().get(array);
+		}
+		return putLongArray(key, array);
+	}
+
+
+	/**
+	 * Inserts an IntList into the mapping of this Bundle as an int array, replacing any existing value for the given key.
+	 * Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value an IntList, or null
+	 * @see BundleReader#getIntList(Bundle, String)
+	 */
+	public BundleBuilder putIntList(String key, IntList value) {
+		return putIntArray(key, value != null ? value.toArray() : null);
+	}
+
+
+	/**
+	 * Inserts a LongList into the mapping of this Bundle as a long array, replacing any existing value for the given key.
+	 * Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a LongList, or null
+	 * @see BundleReader#getLongList(Bundle, String)
+	 */
+	public BundleBuilder putLongList(String key, LongList value) {
+		return putLongArray(key, value != null ? value.toArray() : null);
+	}
+
+
+	/**
+	 * Inserts a SparseIntArray into the mapping of this Bundle as a packed int array, a marker and the size followed by all
+	 * keys and all values, replacing any existing value for the given key. Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a SparseIntArray, or null
+	 * @see BundleReader#getSparseIntArray(Bundle, String)
+	 */
+	public BundleBuilder putSparseIntArray(String key, SparseIntArray value) {
+		int[] array = null;
+		if (value != null) {
+			int size = value.size();
+			int header = BundleValues.SPARSE_INT_ARRAY_HEADER;
+			array = new int[header + 2 * size];
+			array[0] = BundleValues.SPARSE_INT_ARRAY_MAGIC;
+			array[1] = size;
+			for (int i = 0; i < size; ++i) {
+				array[header + i] = value.keyAt(i);
+				array[header + size + i] = value.valueAt(i);
+			}
+		}
+		return putIntArray(key, array);
+	}
+
+
+	/**
+	 * Inserts an ArrayList<String> value into the mapping of this Bundle, replacing any existing value for the given key.
+	 * Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value an ArrayList<String> object, or null
+	 */
+	public BundleBuilder putStringArrayList(String key, ArrayList<String> value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putStringArrayList(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts an ArrayList<CharSequence> value into the mapping of this Bundle, replacing any existing value for the given key.
+	 * Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value an ArrayList<CharSequence> object, or null
+	 */
+	public BundleBuilder putCharSequenceArrayList(String key, ArrayList<CharSequence> value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putCharSequenceArrayList(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a Serializable value into the mapping of this Bundle, replacing any existing value for the given key. Either key
+	 * or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a Serializable object, or null
+	 */
+	public BundleBuilder putSerializable(String key, Serializable value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putSerializable(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a model object into the mapping of this Bundle, replacing any existing value for the given key. The object is
+	 * marshalled by the given codec, which is much faster than Java serialization. Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a model object, or null
+	 * @param codec the ParcelCodec of the model type
+	 * @throws IllegalArgumentException if the codec class cannot be instantiated by name, see {@link ParcelCodec}
+	 * @see BundleReader#getModel(Bundle, String)
+	 */
+	public <T> BundleBuilder putModel(String key, T value, ParcelCodec<T> codec) {
+		ModelValue<T> model = new ModelValue<>(value, codec);
+		track(key, sizeOfOpaque(model));
+		bundle.putParcelable(key, model);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a lazily computed value into the mapping of this Bundle, replacing any existing value for the given key. The
+	 * supplier is invoked when the value is read through {@link BundleReader#get(Bundle, String)} or when the Bundle is
+	 * parceled, but never if the Bundle is discarded before. Lazy values are not measured for the size budget.
+	 *
+	 * @param key a String, or null
+	 * @param supplier computes a value of any type supported by <code>Parcel.writeValue()</code>
+	 */
+	public BundleBuilder putLazy(String key, LazyValue.Supplier<?> supplier) {
+		track(key, ParcelSizeEstimator.OPAQUE_SIZE);
+		bundle.putParcelable(key, new LazyValue<>(supplier));
+		return this;
+	}
+
+
+	/**
+	 * Inserts a value for a typed key into the mapping of this Bundle, replacing any existing value for the given key.
+	 *
+	 * @param key an ArgumentKey
+	 * @param value a value of the key's type
+	 */
+	public <T> BundleBuilder put(ArgumentKey<T> key, T value) {
+		Object bundleValue = key.toBundleValue(value);
+		track(key.getName(), sizeOfOpaque(bundleValue));
+		BundleValues.put(bundle, key.getName(), bundleValue);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a boolean array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
+	 * or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a boolean array object, or null
+	 */
+	public BundleBuilder putBooleanArray(String key, boolean[] value) {
+		track(key, ParcelSizeEstimator.sizeOf(value));
+		bundle.putBooleanArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a byte array value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
+	 * value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a byte array object, or null
+	 */
+	public BundleBuilder putByteArray(String key, byte[] value) {
+		if (value != null && shouldSpill(value.length, SpilledArray.TYPE_BYTE)
+				&& putSpilled(key, value, SpilledArray.TYPE_BYTE, value.length)) {
+			return this;
+		}
+		track(key, ParcelSizeEstimator.sizeOf(value));
+		bundle.putByteArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a short array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
+	 * or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a short array object, or null
+	 */
+	public BundleBuilder putShortArray(String key, short[] value) {
+		if (value != null && shouldSpill(value.length, SpilledArray.TYPE_SHORT)
+				&& putSpilled(key, value, SpilledArray.TYPE_SHORT, value.length)) {
+			return this;
+		}
+		// written as a Serializable
+		track(key, sizeOfOpaque(value));
+		bundle.putShortArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a char array value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
+	 * value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a char array object, or null
+	 */
+	public BundleBuilder putCharArray(String key, char[] value) {
+		if (value != null && shouldSpill(value.length, SpilledArray.TYPE_CHAR)
+				&& putSpilled(key, value, SpilledArray.TYPE_CHAR, value.length)) {
+			return this;
+		}
+		// written as a Serializable
+		track(key, sizeOfOpaque(value));
+		bundle.putCharArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts an int array value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
+	 * value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value an int array object, or null
+	 */
+	public BundleBuilder putIntArray(String key, int[] value) {
+		if (value != null && shouldSpill(value.length, SpilledArray.TYPE_INT)
+				&& putSpilled(key, value, SpilledArray.TYPE_INT, value.length)) {
+			return this;
+		}
+		track(key, ParcelSizeEstimator.sizeOf(value));
+		bundle.putIntArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a long array value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
+	 * value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a long array object, or null
+	 */
+	public BundleBuilder putLongArray(String key, long[] value) {
+		if (value != null && shouldSpill(value.length, SpilledArray.TYPE_LONG)
+				&& putSpilled(key, value, SpilledArray.TYPE_LONG, value.length)) {
+			return this;
+		}
+		track(key, ParcelSizeEstimator.sizeOf(value));
+		bundle.putLongArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a float array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
+	 * or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a float array object, or null
+	 */
+	public BundleBuilder putFloatArray(String key, float[] value) {
+		if (value != null && shouldSpill(value.length, SpilledArray.TYPE_FLOAT)
+				&& putSpilled(key, value, SpilledArray.TYPE_FLOAT, value.length)) {
+			return this;
+		}
+		// written as a Serializable
+		track(key, sizeOfOpaque(value));
+		bundle.putFloatArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a double array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
+	 * or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a double array object, or null
+	 */
+	public BundleBuilder putDoubleArray(String key, double[] value) {
+		if (value != null && shouldSpill(value.length, SpilledArray.TYPE_DOUBLE)
+				&& putSpilled(key, value, SpilledArray.TYPE_DOUBLE, value.length)) {
+			return this;
+		}
+		track(key, ParcelSizeEstimator.sizeOf(value));
+		bundle.putDoubleArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a String array value into the mapping of this Bundle, replacing any existing value for the given key. Either key
+	 * or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a String array object, or null
+	 */
+	public BundleBuilder putStringArray(String key, String[] value) {
+		track(key, ParcelSizeEstimator.sizeOf(value));
+		bundle.putStringArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a CharSequence array value into the mapping of this Bundle, replacing any existing value for the given key.
+	 * Either key or value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a CharSequence array object, or null
+	 */
+	public BundleBuilder putCharSequenceArray(String key, CharSequence[] value) {
+		track(key, ParcelSizeEstimator.sizeOf(value));
+		bundle.putCharSequenceArray(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a Size value into the mapping of this Bundle, replacing any existing value for the given key. Either key or value
+	 * may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a Size object, or null
+	 * @since API level 21
+	 */
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	public BundleBuilder putSize(String key, Size value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putSize(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a SizeF value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
+	 * value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a SizeF object, or null
+	 * @since API level 21
+	 */
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	public BundleBuilder putSizeF(String key, SizeF value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putSizeF(key, value);
+		return this;
+	}
+
+
+	/**
+	 * Inserts a Bundle value into the mapping of this Bundle, replacing any existing value for the given key. Either key or
+	 * value may be null.
+	 *
+	 * @param key a String, or null
+	 * @param value a Bundle object, or null
+	 */
+	public BundleBuilder putBundle(String key, Bundle value) {
+		track(key, sizeOfOpaque(value));
+		bundle.putBundle(key, value);
+		return this;
+	}
+
+
+	private boolean shouldSpill(int length, int type) {
+		return spillThreshold != NO_SPILL && (long) length * SpilledArray.elementSize(type) >= spillThreshold;
+	}
+
+
+	/**
+	 * Write an array out of band and insert its handle.
+	 *
+	 * @return true if the array has been spilled, false if it has to be inserted inline
+	 */
+	private boolean putSpilled(String key, Object array, int type, int length) {
+		SpilledArray spilled;
+		try {
+			spilled = SpilledArray.create(array, type, length, spillDirectory);
+		}
+		catch (IOException e) {
+			Log.w(TAG, "Spilling '" + key + "' failed, inserting it inline", e);
+			return false;
+		}
+		try {
+			track(key, ParcelSizeEstimator.estimate(spilled));
+		}
+		catch (IllegalArgumentException e) {
+			spilled.release();
+			throw e;
+		}
+		bundle.putParcelable(key, spilled);
+		if (unbuiltSpills == null) {
+			unbuiltSpills = new ArrayList<>();
+		}
+		unbuiltSpills.add(spilled);
+		return true;
+	}
+
+
+	/**
+	 * Size of a value without a fixed layout, measured exactly only if a budget has to be enforced.
+	 */
+	private int sizeOfOpaque(Object value) {
+		return sizeBudget != NO_BUDGET ? ParcelSizeEstimator.measure(value) : ParcelSizeEstimator.estimate(value);
+	}
+
+
+	/**
+	 * Update the size estimate for an entry that is about to be inserted and enforce the budget.
+	 *
+	 * @param key the key of the entry
+	 * @param valueSize size of the value in bytes
+	 */
+	private void track(String key, int valueSize) {
+		checkNotRecycled();
+		if (sizeBudget != NO_BUDGET) {
+			ensureSourceEstimated();
+		}
+		int entrySize = ParcelSizeEstimator.sizeOfKey(key) + valueSize;
+		int previousSize = getEntrySize(key);
+		int newEstimatedSize = estimatedSize + entrySize - previousSize;
+
+		if (sizeBudget != NO_BUDGET && newEstimatedSize > sizeBudget && entrySize > previousSize) {
+			String message = "Bundle size budget of " + sizeBudget + " bytes exceeded by '" + key + "' (" + entrySize
+					+ " bytes), estimated size " + newEstimatedSize + " bytes: " + formatBreakdown();
+			if (budgetPolicy == BUDGET_POLICY_REJECT) {
+				throw new IllegalArgumentException(message);
+			}
+			Log.w(TAG, message);
+		}
+
+		if (changes != null && !changes.containsKey(key)) {
+			// remember the snapshot's value on the first write
+			changes.put(key, bundle.containsKey(key) ? bundle.get(key) : ABSENT);
+		}
+		releaseReplaced(key);
+
+		entrySizes.put(key, entrySize);
+		estimatedSize = newEstimatedSize;
+	}
+
+
+	/**
+	 * Release a spilled array that is about to be replaced, since no Bundle will reference it anymore.
+	 */
+	private void releaseReplaced(String key) {
+		Object previous = bundle.get(key);
+		if (!(previous instanceof SpilledArray)) {
+			return;
+		}
+		boolean unbuilt = unbuiltSpills != null && unbuiltSpills.remove(previous);
+		// the Bundles built from a template hold their own references to the overwritten entries
+		if (unbuilt || template == null) {
+			((SpilledArray) previous).release();
+		}
+	}
+
+
+	/**
+	 * Estimate the entries of a wrapped Bundle that have not been inserted through this BundleBuilder, and recompute the
+	 * running estimate, which only reflected the inserted entries so far.
+	 */
+	private void ensureSourceEstimated() {
+		if (sourceEstimated) {
+			return;
+		}
+		sourceEstimated = true;
+		estimatedSize = ParcelSizeEstimator.BUNDLE_HEADER_SIZE;
+		for (String key : bundle.keySet()) {
+			Integer entrySize = entrySizes.get(key);
+			if (entrySize == null) {
+				entrySize = ParcelSizeEstimator.sizeOfKey(key) + ParcelSizeEstimator.estimate(bundle.get(key));
+				entrySizes.put(key, entrySize);
+			}
+			estimatedSize += entrySize;
+		}
+	}
+
+
+	/**
+	 * Get the estimated size of an entry, falling back to the template's entries.
+	 *
+	 * @return size in bytes, or 0 if there is no such entry
+	 */
+	private int getEntrySize(String key) {
+		Integer size = entrySizes.get(key);
+		if (size == null && template != null) {
+			size = template.entrySizes.get(key);
+		}
+		return size != null ? size : 0;
+	}
+
+
+	private String formatBreakdown() {
+		StringBuilder builder = new StringBuilder();
+		int count = 0;
+		for (Map.Entry<String, Integer> entry : getSizeBreakdown().entrySet()) {
+			if (count == BREAKDOWN_ENTRIES) {
+				builder.append(", ...");
+				break;
+			}
+			builder.append(count == 0 ? "" : ", ").append(entry.getKey()).append('=').append(entry.getValue());
+			++count;
+		}
+		return builder.toString();
+	}
+
+
+	/**
+	 * Write the built Bundle into an indexed snapshot file, which can be restored key by key.
+	 *
+	 * @param file the target file
+	 * @param compress true to Deflate-compress large values
+	 * @throws IOException if the file could not be written
+	 * @see BundleSnapshot#open(File, ClassLoader)
+	 */
+	public void writeSnapshot(File file, boolean compress) throws IOException {
+		BundleSnapshot.write(build(), file, compress);
+	}
+
+
+	/**
+	 * Freeze the current mappings into a template. Variants derived from the template share its entries, the template is
+	 * not affected by further changes to this BundleBuilder.<br>
+	 * The template holds its own reference to each spilled array, see {@link BundleTemplate#release()}.
+	 *
+	 * @return a BundleTemplate
+	 */
+	public BundleTemplate buildTemplate() {
+		ensureSourceEstimated();
+		Map<String, Integer> sizes = entrySizes;
+		if (template != null) {
+			sizes = new HashMap<>(template.entrySizes);
+			sizes.putAll(entrySizes);
+			return new BundleTemplate(build(), sizes, estimatedSize);
+		}
+		checkNotRecycled();
+		// the own references stay with this BundleBuilder, which still holds the spilled arrays
+		Bundle frozen = new Bundle(bundle);
+		SpilledArray.retainAll(frozen);
+		return new BundleTemplate(frozen, sizes, estimatedSize);
+	}
+
+
+	/**
+	 * Get an immutable view of the built Bundle, which can be read by multiple threads without locks or copies.
+	 *
+	 * @return a FrozenBundle
+	 */
+	public FrozenBundle buildFrozen() {
+		return new FrozenBundle(build());
+	}
+
+
+	/**
+	 * Get the Bundle.<br>
+	 * A BundleBuilder derived from a template creates a new Bundle on every call, containing the template's entries and
+	 * the overwritten entries. Each of these Bundles holds its own reference to the spilled arrays it contains.
+	 *
+	 * @return built Bundle instance
+	 */
+	public Bundle build() {
+		checkNotRecycled();
+		if (template == null) {
+			// the spilled arrays are released by the receiver of the Bundle from now on
+			unbuiltSpills = null;
+			return bundle;
+		}
+		Bundle result = materialize();
+		for (String key : result.keySet()) {
+			Object value = result.get(key);
+			// the references of arrays spilled by this BundleBuilder are handed over to the first built Bundle
+			if (value instanceof SpilledArray && (unbuiltSpills == null || !unbuiltSpills.remove(value))) {
+				((SpilledArray) value).retain();
+			}
+		}
+		unbuiltSpills = null;
+		return result;
+	}
+
+
+	/**
+	 * Copy the template's entries and the overwritten entries into a new Bundle, without acquiring references.
+	 */
+	private Bundle materialize() {
+		Bundle result = new Bundle(template.bundle);
+		result.putAll(bundle);
+		return result;
+	}
+
+}
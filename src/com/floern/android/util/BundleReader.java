@@ -0,0 +1,310 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.os.Bundle;
+import android.util.SparseIntArray;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * A utility class to read values from a <code>Bundle</code> built with {@link BundleBuilder}, including values stored in
+ * a special representation by the builder.
+ *
+ * @author Floern
+ */
+public final class BundleReader {
+
+	private BundleReader() {
+	}
+
+
+	/**
+	 * Returns the value associated with the given key, or null if no mapping exists for the given key.
+	 * Lazy values are computed and model objects are unwrapped.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return an Object, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(Bundle bundle, String key) {
+		return (T) unwrap(bundle.get(key));
+	}
+
+
+	/**
+	 * Unwrap a value stored in a special representation by the BundleBuilder.
+	 */
+	static Object unwrap(Object value) {
+		if (value instanceof LazyValue) {
+			value = ((LazyValue<?>) value).get();
+		}
+		if (value instanceof ModelValue) {
+			value = ((ModelValue<?>) value).getValue();
+		}
+		return value;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as a read-only ByteBuffer, or null if no byte array exists for the
+	 * given key. Spilled arrays are mapped without copying.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return a ByteBuffer, or null
+	 */
+	public static ByteBuffer getByteBuffer(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof SpilledArray && ((SpilledArray) value).getType() == SpilledArray.TYPE_BYTE) {
+			return ((SpilledArray) value).map();
+		}
+		if (value instanceof byte[]) {
+			return ByteBuffer.wrap((byte[]) value).asReadOnlyBuffer();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as a read-only ShortBuffer, or null if no short array exists for
+	 * the given key. Spilled arrays are mapped without copying.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return a ShortBuffer, or null
+	 */
+	public static ShortBuffer getShortBuffer(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof SpilledArray && ((SpilledArray) value).getType() == SpilledArray.TYPE_SHORT) {
+			return ((SpilledArray) value).asShortBuffer();
+		}
+		if (value instanceof short[]) {
+			return ShortBuffer.wrap((short[]) value).asReadOnlyBuffer();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as a read-only CharBuffer, or null if no char array exists for the
+	 * given key. Spilled arrays are mapped without copying.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return a CharBuffer, or null
+	 */
+	public static CharBuffer getCharBuffer(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof SpilledArray && ((SpilledArray) value).getType() == SpilledArray.TYPE_CHAR) {
+			return ((SpilledArray) value).asCharBuffer();
+		}
+		if (value instanceof char[]) {
+			return CharBuffer.wrap((char[]) value).asReadOnlyBuffer();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as a read-only IntBuffer, or null if no int array exists for the
+	 * given key. Spilled arrays are mapped without copying.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return an IntBuffer, or null
+	 */
+	public static IntBuffer getIntBuffer(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof SpilledArray && ((SpilledArray) value).getType() == SpilledArray.TYPE_INT) {
+			return ((SpilledArray) value).asIntBuffer();
+		}
+		if (value instanceof int[]) {
+			return IntBuffer.wrap((int[]) value).asReadOnlyBuffer();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as a read-only LongBuffer, or null if no long array exists for the
+	 * given key. Spilled arrays are mapped without copying.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return a LongBuffer, or null
+	 */
+	public static LongBuffer getLongBuffer(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof SpilledArray && ((SpilledArray) value).getType() == SpilledArray.TYPE_LONG) {
+			return ((SpilledArray) value).asLongBuffer();
+		}
+		if (value instanceof long[]) {
+			return LongBuffer.wrap((long[]) value).asReadOnlyBuffer();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as a read-only FloatBuffer, or null if no float array exists for
+	 * the given key. Spilled arrays are mapped without copying.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return a FloatBuffer, or null
+	 */
+	public static FloatBuffer getFloatBuffer(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof SpilledArray && ((SpilledArray) value).getType() == SpilledArray.TYPE_FLOAT) {
+			return ((SpilledArray) value).asFloatBuffer();
+		}
+		if (value instanceof float[]) {
+			return FloatBuffer.wrap((float[]) value).asReadOnlyBuffer();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as a read-only DoubleBuffer, or null if no double array exists for
+	 * the given key. Spilled arrays are mapped without copying.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return a DoubleBuffer, or null
+	 */
+	public static DoubleBuffer getDoubleBuffer(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof SpilledArray && ((SpilledArray) value).getType() == SpilledArray.TYPE_DOUBLE) {
+			return ((SpilledArray) value).asDoubleBuffer();
+		}
+		if (value instanceof double[]) {
+			return DoubleBuffer.wrap((double[]) value).asReadOnlyBuffer();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the model object associated with the given key, or null if no model object exists for the given key.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return a model object, or null
+	 * @see BundleBuilder#putModel(String, Object, ParcelCodec)
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T getModel(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof ModelValue) {
+			return ((ModelValue<T>) value).getValue();
+		}
+		return null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as an IntList backed by the stored array, or null if no int array
+	 * exists for the given key. Spilled arrays are copied.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return an IntList, or null
+	 * @see BundleBuilder#putIntList(String, IntList)
+	 */
+	public static IntList getIntList(Bundle bundle, String key) {
+		int[] array = getIntArray(bundle, key);
+		return array != null ? IntList.wrap(array) : null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as a LongList backed by the stored array, or null if no long array
+	 * exists for the given key. Spilled arrays are copied.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return a LongList, or null
+	 * @see BundleBuilder#putLongList(String, LongList)
+	 */
+	public static LongList getLongList(Bundle bundle, String key) {
+		long[] array = getLongArray(bundle, key);
+		return array != null ? LongList.wrap(array) : null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key as a SparseIntArray, or null if no packed SparseIntArray exists for
+	 * the given key. Plain int arrays are not accepted.
+	 *
+	 * @param bundle a Bundle
+	 * @param key a String, or null
+	 * @return a SparseIntArray, or null
+	 * @see BundleBuilder#putSparseIntArray(String, SparseIntArray)
+	 */
+	public static SparseIntArray getSparseIntArray(Bundle bundle, String key) {
+		int[] array = getIntArray(bundle, key);
+		int header = BundleValues.SPARSE_INT_ARRAY_HEADER;
+		if (array == null || array.length < header || array[0] != BundleValues.SPARSE_INT_ARRAY_MAGIC
+				|| array[1] < 0 || array.length != header + 2L * array[1]) {
+			return null;
+		}
+		int size = array[1];
+		SparseIntArray sparseArray = new SparseIntArray(size);
+		for (int i = 0; i < size; ++i) {
+			int sparseKey = array[header + i];
+			if (i > 0 && sparseKey <= array[header + i - 1]) {
+				// keys are written in ascending order
+				return null;
+			}
+			sparseArray.append(sparseKey, array[header + size + i]);
+		}
+		return sparseArray;
+	}
+
+
+	/**
+	 * Get a stored int array, copying spilled arrays.
+	 */
+	private static int[] getIntArray(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof SpilledArray && ((SpilledArray) value).getType() == SpilledArray.TYPE_INT) {
+			IntBuffer buffer = ((SpilledArray) value).asIntBuffer();
+			int[] array = new int[buffer.remaining()];
+			buffer.get(array);
+			return array;
+		}
+		if (value instanceof int[]) {
+			return (int[]) value;
+		}
+		return null;
+	}
+
+
+	/**
+	 * Get a stored long array, copying spilled arrays.
+	 */
+	private static long[] getLongArray(Bundle bundle, String key) {
+		Object value = bundle.get(key);
+		if (value instanceof SpilledArray && ((SpilledArray) value).getType() == SpilledArray.TYPE_LONG) {
+			LongBuffer buffer = ((SpilledArray) value).asLongBuffer();
+			long[] array = new long[buffer.remaining()];
+			buffer.get(array);
+			return array;
+		}
+		if (value instanceof long[]) {
+			return (long[]) value;
+		}
+		return null;
+	}
+
+}
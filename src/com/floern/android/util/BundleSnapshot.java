@@ -0,0 +1,367 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An on-disk snapshot of a <code>Bundle</code> with an index and one block per key, so that a restore only decodes the
+ * keys that are actually requested. Blocks can be Deflate-compressed, the file is read through memory mapping.
+ * <p>
+ * Each block holds the marshalled value, whose format is only stable on the same platform version. Snapshots are meant
+ * for process-death recovery and are rejected if they have been written by another platform version. Values holding
+ * file descriptors or binders cannot be written.
+ * <p>
+ * File layout: header (magic, version, SDK level), blocks, index (per key: key, offset, stored length, raw length,
+ * compression flag), offset of the index.
+ *
+ * @author Floern
+ * @see BundleBuilder#writeSnapshot(File, boolean)
+ */
+public final class BundleSnapshot {
+
+	private static final int MAGIC = 0x42534e50; // "BSNP"
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int HEADER_SIZE = 3 * 4;
+
+	/** blocks smaller than this are not worth compressing */
+	private static final int MIN_COMPRESS_SIZE = 256;
+
+	private final ByteBuffer data;
+
+	private final Map<String, Block> index;
+
+	private final ClassLoader classLoader;
+
+	/** decoded values as stored, before unwrapping */
+	private final Map<String, Object> decoded = new HashMap<>();
+
+
+	private static final class Block {
+		final int offset;
+		final int storedLength;
+		final int rawLength;
+		final boolean compressed;
+
+		Block(int offset, int storedLength, int rawLength, boolean compressed) {
+			this.offset = offset;
+			this.storedLength = storedLength;
+			this.rawLength = rawLength;
+			this.compressed = compressed;
+		}
+	}
+
+
+	private BundleSnapshot(ByteBuffer data, Map<String, Block> index, ClassLoader classLoader) {
+		this.data = data;
+		this.index = index;
+		this.classLoader = classLoader;
+	}
+
+
+	/**
+	 * Write a Bundle into a snapshot file. The file is replaced atomically.
+	 *
+	 * @param bundle a Bundle
+	 * @param file the target file
+	 * @param compress true to Deflate-compress large blocks
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(Bundle bundle, File file, boolean compress) throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+		ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+		DataOutputStream indexOut = new DataOutputStream(indexBytes);
+		FileOutputStream fileOut = new FileOutputStream(tempFile);
+		boolean moved = false;
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(Build.VERSION.SDK_INT);
+			int offset = HEADER_SIZE;
+
+			indexOut.writeInt(bundle.size());
+			for (String key : bundle.keySet()) {
+				byte[] raw = marshall(bundle.get(key));
+				byte[] stored = raw;
+				if (deflater != null && raw.length >= MIN_COMPRESS_SIZE) {
+					byte[] compressed = deflate(deflater, raw);
+					if (compressed.length < raw.length) {
+						stored = compressed;
+					}
+				}
+				out.write(stored);
+
+				indexOut.writeBoolean(key != null);
+				if (key != null) {
+					indexOut.writeUTF(key);
+				}
+				indexOut.writeInt(offset);
+				indexOut.writeInt(stored.length);
+				indexOut.writeInt(raw.length);
+				indexOut.writeBoolean(stored != raw);
+				offset += stored.length;
+			}
+
+			indexOut.flush();
+			indexBytes.writeTo(out);
+			out.writeInt(offset);
+			out.flush();
+			fileOut.getFD().sync();
+			fileOut.close();
+			moved = tempFile.renameTo(file);
+			if (!moved) {
+				throw new IOException("snapshot could not be moved to " + file);
+			}
+		}
+		finally {
+			fileOut.close();
+			if (deflater != null) {
+				deflater.end();
+			}
+			if (!moved) {
+				// don't leave partial snapshots behind
+				tempFile.delete();
+			}
+		}
+	}
+
+
+	private static byte[] marshall(Object value) {
+		Parcel parcel = Parcel.obtain();
+		try {
+			parcel.writeValue(value);
+			return parcel.marshall();
+		}
+		finally {
+			parcel.recycle();
+		}
+	}
+
+
+	private static byte[] deflate(Deflater deflater, byte[] raw) {
+		deflater.reset();
+		deflater.setInput(raw);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+		byte[] buffer = new byte[4096];
+		while (!deflater.finished()) {
+			out.write(buffer, 0, deflater.deflate(buffer));
+		}
+		return out.toByteArray();
+	}
+
+
+	/**
+	 * Open a snapshot file. Only the index is read, values are decoded on first access.
+	 *
+	 * @param file the snapshot file
+	 * @param classLoader the ClassLoader to instantiate Parcelables, or null for the ClassLoader of this library
+	 * @return a BundleSnapshot
+	 * @throws IOException if the file could not be read or has been written by another platform version
+	 */
+	public static BundleSnapshot open(File file, ClassLoader classLoader) throws IOException {
+		ByteBuffer data;
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			data = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+		}
+		finally {
+			randomAccessFile.close();
+		}
+
+		try {
+			if (data.getInt(0) != MAGIC || data.getInt(4) != FORMAT_VERSION) {
+				throw new IOException("not a snapshot file: " + file);
+			}
+			if (data.getInt(8) != Build.VERSION.SDK_INT) {
+				throw new IOException("snapshot has been written by another platform version: " + file);
+			}
+
+			data.position(data.getInt(data.limit() - 4));
+			int count = data.getInt();
+			Map<String, Block> index = new HashMap<>(count * 4 / 3 + 1);
+			for (int i = 0; i < count; ++i) {
+				String key = data.get() != 0 ? readUTF(data) : null;
+				int offset = data.getInt();
+				int storedLength = data.getInt();
+				int rawLength = data.getInt();
+				boolean compressed = data.get() != 0;
+				index.put(key, new Block(offset, storedLength, rawLength, compressed));
+			}
+			// the boot ClassLoader Parcel falls back to can't load any app or library Parcelable
+			return new BundleSnapshot(data, index,
+					classLoader != null ? classLoader : BundleSnapshot.class.getClassLoader());
+		}
+		catch (RuntimeException e) {
+			// truncated or otherwise corrupted file
+			throw new IOException("corrupted snapshot file: " + file, e);
+		}
+	}
+
+
+	/**
+	 * Read a String written by <code>DataOutput.writeUTF()</code>.
+	 */
+	private static String readUTF(ByteBuffer data) throws IOException {
+		int length = data.getShort() & 0xffff;
+		char[] chars = new char[length];
+		int count = 0;
+		int end = data.position() + length;
+		while (data.position() < end) {
+			int b = data.get() & 0xff;
+			if (b < 0x80) {
+				chars[count++] = (char) b;
+			}
+			else if ((b & 0xe0) == 0xc0) {
+				chars[count++] = (char) (((b & 0x1f) << 6) | (data.get() & 0x3f));
+			}
+			else if ((b & 0xf0) == 0xe0) {
+				chars[count++] = (char) (((b & 0x0f) << 12) | ((data.get() & 0x3f) << 6) | (data.get() & 0x3f));
+			}
+			else {
+				throw new IOException("malformed key");
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+
+	/**
+	 * Returns the number of mappings contained in this snapshot.
+	 *
+	 * @return the number of mappings
+	 */
+	public int size() {
+		return index.size();
+	}
+
+
+	/**
+	 * Returns true if the given key is contained in this snapshot.
+	 *
+	 * @param key a String key
+	 * @return true if the key is part of the mapping, false otherwise
+	 */
+	public boolean containsKey(String key) {
+		return index.containsKey(key);
+	}
+
+
+	/**
+	 * Returns a Set containing the Strings used as keys in this snapshot.
+	 *
+	 * @return a Set of String keys
+	 */
+	public Set<String> keySet() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+
+	/**
+	 * Returns the entry with the given key, decoding it on first access. Lazy values and model objects are unwrapped.
+	 *
+	 * @param key a String, or null
+	 * @return an Object, or null
+	 * @throws IllegalStateException if the value could not be decoded
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String key) {
+		return (T) BundleReader.unwrap(getStored(key));
+	}
+
+
+	/**
+	 * Get the value as stored, decoding it on first access.
+	 */
+	private synchronized Object getStored(String key) {
+		if (decoded.containsKey(key)) {
+			return decoded.get(key);
+		}
+		Block block = index.get(key);
+		if (block == null) {
+			return null;
+		}
+		Object value = decode(block);
+		decoded.put(key, value);
+		return value;
+	}
+
+
+	/**
+	 * Create a Bundle containing the given keys of this snapshot. Only these keys are decoded, lazy values and model
+	 * objects are kept in their stored representation.
+	 *
+	 * @param keys the keys to restore
+	 * @return a new Bundle
+	 */
+	public Bundle toBundle(String... keys) {
+		Bundle bundle = new Bundle(keys.length);
+		for (String key : keys) {
+			if (containsKey(key)) {
+				BundleValues.put(bundle, key, getStored(key));
+			}
+		}
+		return bundle;
+	}
+
+
+	private Object decode(Block block) {
+		byte[] stored = new byte[block.storedLength];
+		ByteBuffer source = data.duplicate();
+		source.position(block.offset);
+		source.get(stored);
+
+		byte[] raw = stored;
+		if (block.compressed) {
+			raw = new byte[block.rawLength];
+			Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(stored);
+				if (inflater.inflate(raw) != block.rawLength) {
+					throw new IllegalStateException("corrupted snapshot block");
+				}
+			}
+			catch (DataFormatException e) {
+				throw new IllegalStateException("corrupted snapshot block", e);
+			}
+			finally {
+				inflater.end();
+			}
+		}
+
+		Parcel parcel = Parcel.obtain();
+		try {
+			parcel.unmarshall(raw, 0, raw.length);
+			parcel.setDataPosition(0);
+			return parcel.readValue(classLoader);
+		}
+		finally {
+			parcel.recycle();
+		}
+	}
+
+}
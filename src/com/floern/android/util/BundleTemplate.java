@@ -0,0 +1,84 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.os.Bundle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A frozen set of Bundle mappings to derive variants from.
+ * <p>
+ * A BundleBuilder derived from a template shares the template's entries and only stores the entries that are
+ * overwritten. {@link BundleBuilder#build()} then materializes a real Bundle by copying the template's map and adding the
+ * overwritten entries with a single <code>putAll</code>.
+ * <p>
+ * The template is never modified and may be shared between threads. Values are not copied, so mutable values like
+ * arrays must not be modified after the template has been built.
+ * <p>
+ * Spilled arrays are reference counted per Bundle: the template and every Bundle built from it hold their own
+ * reference, which are released independently with {@link #release()} and {@link SpilledArray#releaseAll(Bundle)}.
+ *
+ * @author Floern
+ * @see BundleBuilder#buildTemplate()
+ */
+public final class BundleTemplate {
+
+	final Bundle bundle;
+
+	final Map<String, Integer> entrySizes;
+
+	final int estimatedSize;
+
+
+	BundleTemplate(Bundle bundle, Map<String, Integer> entrySizes, int estimatedSize) {
+		// unparcel once, so that every copy starts from the unparceled map
+		bundle.size();
+		this.bundle = bundle;
+		this.entrySizes = new HashMap<>(entrySizes);
+		this.estimatedSize = estimatedSize;
+	}
+
+
+	/**
+	 * Create a new BundleBuilder that derives from this template.
+	 *
+	 * @return a BundleBuilder
+	 */
+	public BundleBuilder newBuilder() {
+		return new BundleBuilder(this);
+	}
+
+
+	/**
+	 * Create a new Bundle containing the template's mappings. The Bundle holds its own reference to each spilled array.
+	 *
+	 * @return a new Bundle
+	 */
+	public Bundle toBundle() {
+		Bundle result = new Bundle(bundle);
+		SpilledArray.retainAll(result);
+		return result;
+	}
+
+
+	/**
+	 * Release the template's references to its spilled arrays. The template must not be used anymore afterwards.
+	 */
+	public void release() {
+		SpilledArray.releaseAll(bundle);
+	}
+
+
+	/**
+	 * Returns the number of mappings contained in this template.
+	 *
+	 * @return the number of mappings
+	 */
+	public int size() {
+		return bundle.size();
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.Parcelable;
+import android.util.Size;
+import android.util.SizeF;
+import android.util.SparseArray;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Helpers to handle untyped Bundle values.
+ *
+ * @author Floern
+ */
+final class BundleValues {
+
+	/** first element of a packed SparseIntArray, to tell it apart from a plain int array */
+	static final int SPARSE_INT_ARRAY_MAGIC = 0x53494131;
+
+	/** number of header elements of a packed SparseIntArray: magic and size */
+	static final int SPARSE_INT_ARRAY_HEADER = 2;
+
+
+	private BundleValues() {
+	}
+
+
+	/**
+	 * Insert an untyped value into a Bundle. Bundle stores every value as is, so a value read by <code>Bundle.get()</code>
+	 * can be inserted by any put method accepting its runtime type and is read back by the matching typed getter.
+	 *
+	 * @param target a Bundle
+	 * @param key a String, or null
+	 * @param value any value supported by Bundle, or null
+	 */
+	@SuppressWarnings("unchecked")
+	static void put(Bundle target, String key, Object value) {
+		if (value == null) {
+			target.putString(key, null);
+		}
+		else if (value instanceof Parcelable) {
+			target.putParcelable(key, (Parcelable) value);
+		}
+		else if (value instanceof Parcelable[]) {
+			target.putParcelableArray(key, (Parcelable[]) value);
+		}
+		else if (value instanceof SparseArray) {
+			target.putSparseParcelableArray(key, (SparseArray<Parcelable>) value);
+		}
+		else if (value instanceof CharSequence) {
+			target.putCharSequence(key, (CharSequence) value);
+		}
+		else if (value instanceof CharSequence[]) {
+			target.putCharSequenceArray(key, (CharSequence[]) value);
+		}
+		else if (value instanceof Serializable) {
+			// boxed primitives, primitive arrays and ArrayLists
+			target.putSerializable(key, (Serializable) value);
+		}
+		else if (value instanceof IBinder && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+			putBinder(target, key, (IBinder) value);
+		}
+		else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && putSize(target, key, value)) {
+			return;
+		}
+		else {
+			throw new IllegalArgumentException("unsupported value type for key '" + key + "': " + value.getClass());
+		}
+	}
+
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	private static void putBinder(Bundle target, String key, IBinder value) {
+		target.putBinder(key, value);
+	}
+
+
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private static boolean putSize(Bundle target, String key, Object value) {
+		if (value instanceof Size) {
+			target.putSize(key, (Size) value);
+			return true;
+		}
+		if (value instanceof SizeF) {
+			target.putSizeF(key, (SizeF) value);
+			return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Check whether two Bundle values are equal. Arrays are compared by content. The same mutable instance is not
+	 * considered equal to itself, since it may have been modified in place.
+	 *
+	 * @param lhs a value, or null
+	 * @param rhs a value, or null
+	 * @return true if the values are equal
+	 */
+	static boolean equal(Object lhs, Object rhs) {
+		if (lhs == rhs) {
+			return lhs == null || isImmutable(lhs);
+		}
+		if (lhs == null || rhs == null) {
+			return false;
+		}
+		if (lhs.getClass().isArray()) {
+			return Arrays.deepEquals(new Object[] { lhs }, new Object[] { rhs });
+		}
+		return isImmutable(lhs) && lhs.equals(rhs);
+	}
+
+
+	private static boolean isImmutable(Object value) {
+		return value instanceof String || value instanceof Number || value instanceof Boolean
+				|| value instanceof Character;
+	}
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.os.Bundle;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, read-only view of a <code>Bundle</code>.
+ * <p>
+ * All mappings are captured on construction and published through final fields, so a FrozenBundle can be shared with
+ * any number of threads and read without locks or defensive copies. {@link #toBundle()} creates a real Bundle when the
+ * framework needs one.
+ * <p>
+ * Values are not copied, so mutable values like arrays must not be modified after freezing.
+ *
+ * @author Floern
+ * @see BundleBuilder#buildFrozen()
+ */
+public final class FrozenBundle {
+
+	/** private copy, never modified or handed out */
+	private final Bundle bundle;
+
+	private final Map<String, Object> values;
+
+
+	/**
+	 * Create a frozen copy of a Bundle.
+	 *
+	 * @param source a Bundle
+	 */
+	public FrozenBundle(Bundle source) {
+		bundle = new Bundle(source);
+		Map<String, Object> map = new HashMap<>(bundle.size() * 4 / 3 + 1);
+		for (String key : bundle.keySet()) {
+			map.put(key, bundle.get(key));
+		}
+		values = Collections.unmodifiableMap(map);
+	}
+
+
+	/**
+	 * Returns the number of mappings.
+	 *
+	 * @return the number of mappings
+	 */
+	public int size() {
+		return values.size();
+	}
+
+
+	/**
+	 * Returns true if the mapping is empty.
+	 *
+	 * @return true if the mapping is empty, false otherwise
+	 */
+	public boolean isEmpty() {
+		return values.isEmpty();
+	}
+
+
+	/**
+	 * Returns true if the given key is contained in the mapping.
+	 *
+	 * @param key a String key
+	 * @return true if the key is part of the mapping, false otherwise
+	 */
+	public boolean containsKey(String key) {
+		return values.containsKey(key);
+	}
+
+
+	/**
+	 * Returns an unmodifiable Set containing the Strings used as keys.
+	 *
+	 * @return a Set of String keys
+	 */
+	public Set<String> keySet() {
+		return values.keySet();
+	}
+
+
+	/**
+	 * Returns the entry with the given key. Lazy values are computed and model objects are unwrapped.
+	 *
+	 * @param key a String, or null
+	 * @return an Object, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String key) {
+		return (T) BundleReader.unwrap(values.get(key));
+	}
+
+
+	/**
+	 * Returns the value associated with the given key, or defaultValue if no mapping of the desired type exists for the
+	 * given key.
+	 *
+	 * @param key a String
+	 * @param defaultValue value to return if key does not exist
+	 * @return a boolean value
+	 */
+	public boolean getBoolean(String key, boolean defaultValue) {
+		Object value = get(key);
+		return value instanceof Boolean ? (Boolean) value : defaultValue;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key, or defaultValue if no mapping of the desired type exists for the
+	 * given key.
+	 *
+	 * @param key a String
+	 * @param defaultValue value to return if key does not exist
+	 * @return an int value
+	 */
+	public int getInt(String key, int defaultValue) {
+		Object value = get(key);
+		return value instanceof Integer ? (Integer) value : defaultValue;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key, or defaultValue if no mapping of the desired type exists for the
+	 * given key.
+	 *
+	 * @param key a String
+	 * @param defaultValue value to return if key does not exist
+	 * @return a long value
+	 */
+	public long getLong(String key, long defaultValue) {
+		Object value = get(key);
+		return value instanceof Long ? (Long) value : defaultValue;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key, or defaultValue if no mapping of the desired type exists for the
+	 * given key.
+	 *
+	 * @param key a String
+	 * @param defaultValue value to return if key does not exist
+	 * @return a float value
+	 */
+	public float getFloat(String key, float defaultValue) {
+		Object value = get(key);
+		return value instanceof Float ? (Float) value : defaultValue;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key, or defaultValue if no mapping of the desired type exists for the
+	 * given key.
+	 *
+	 * @param key a String
+	 * @param defaultValue value to return if key does not exist
+	 * @return a double value
+	 */
+	public double getDouble(String key, double defaultValue) {
+		Object value = get(key);
+		return value instanceof Double ? (Double) value : defaultValue;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key, or null if no mapping of the desired type exists for the given key.
+	 *
+	 * @param key a String, or null
+	 * @return a String value, or null
+	 */
+	public String getString(String key) {
+		Object value = get(key);
+		return value instanceof String ? (String) value : null;
+	}
+
+
+	/**
+	 * Returns the value associated with the given key, or null if no mapping of the desired type exists for the given key.
+	 *
+	 * @param key a String, or null
+	 * @return a CharSequence value, or null
+	 */
+	public CharSequence getCharSequence(String key) {
+		Object value = get(key);
+		return value instanceof CharSequence ? (CharSequence) value : null;
+	}
+
+
+	/**
+	 * Create a new, modifiable Bundle containing all mappings.
+	 *
+	 * @return a new Bundle
+	 */
+	public Bundle toBundle() {
+		return new Bundle(bundle);
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of <code>int</code> values without boxing.
+ * <p>
+ * The growth and bounds logic is shared with {@link LongList} in {@link PrimitiveLists}, both classes are kept
+ * symmetric otherwise.
+ *
+ * @author Floern
+ * @see BundleBuilder#putIntList(String, IntList)
+ * @see BundleReader#getIntList(android.os.Bundle, String)
+ */
+public class IntList {
+
+	private int[] values;
+
+	private int size;
+
+
+	/**
+	 * Create an empty IntList.
+	 */
+	public IntList() {
+		this(PrimitiveLists.DEFAULT_CAPACITY);
+	}
+
+
+	/**
+	 * Create an empty IntList with the given initial capacity.
+	 *
+	 * @param capacity initial capacity
+	 */
+	public IntList(int capacity) {
+		values = new int[capacity];
+	}
+
+
+	private IntList(int[] values, int size) {
+		this.values = values;
+		this.size = size;
+	}
+
+
+	/**
+	 * Create an IntList backed by the given array, without copying it.
+	 *
+	 * @param values an int array
+	 * @return an IntList containing all values of the array
+	 */
+	public static IntList wrap(int[] values) {
+		return new IntList(values, values.length);
+	}
+
+
+	/**
+	 * Appends a value to the end of the list.
+	 *
+	 * @param value an int
+	 */
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, PrimitiveLists.grownCapacity(size));
+		}
+		values[size++] = value;
+	}
+
+
+	/**
+	 * Returns the value at the given index.
+	 *
+	 * @param index an index
+	 * @return the value
+	 */
+	public int get(int index) {
+		PrimitiveLists.checkIndex(index, size);
+		return values[index];
+	}
+
+
+	/**
+	 * Replaces the value at the given index.
+	 *
+	 * @param index an index
+	 * @param value an int
+	 */
+	public void set(int index, int value) {
+		PrimitiveLists.checkIndex(index, size);
+		values[index] = value;
+	}
+
+
+	/**
+	 * Returns the number of values in this list.
+	 *
+	 * @return the number of values
+	 */
+	public int size() {
+		return size;
+	}
+
+
+	/**
+	 * Removes all values from this list.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+
+	/**
+	 * Returns a new array containing all values of this list.
+	 *
+	 * @return an int array
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+}
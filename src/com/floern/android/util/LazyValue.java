@@ -0,0 +1,160 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parcelable container for a value that is computed on first access, either when it is read through
+ * {@link BundleReader#get(android.os.Bundle, String)} or when the Bundle is parceled.
+ * <p>
+ * The counters {@link #getCreatedCount()} and {@link #getMaterializedCount()} show how many lazy values have never been
+ * needed.
+ *
+ * @param <T> the value type, any type supported by <code>Parcel.writeValue()</code>
+ * @author Floern
+ * @see BundleBuilder#putLazy(String, Supplier)
+ */
+public final class LazyValue<T> implements Parcelable {
+
+	/**
+	 * Computes a lazy value.
+	 *
+	 * @param <T> the value type
+	 */
+	public interface Supplier<T> {
+
+		/**
+		 * Compute the value. Called at most once, on any thread that reads the value.
+		 *
+		 * @return the value, or null
+		 */
+		T get();
+
+	}
+
+
+	private static final AtomicInteger createdCount = new AtomicInteger();
+
+	private static final AtomicInteger materializedCount = new AtomicInteger();
+
+	private Supplier<? extends T> supplier;
+
+	private volatile boolean materialized;
+
+	private T value;
+
+
+	LazyValue(Supplier<? extends T> supplier) {
+		if (supplier == null) {
+			throw new NullPointerException("supplier must not be null");
+		}
+		this.supplier = supplier;
+		createdCount.incrementAndGet();
+	}
+
+
+	private LazyValue(T value) {
+		this.value = value;
+		this.materialized = true;
+	}
+
+
+	/**
+	 * Get the value, computing it if it hasn't been computed yet.
+	 *
+	 * @return the value, or null
+	 */
+	public T get() {
+		if (!materialized) {
+			synchronized (this) {
+				if (!materialized) {
+					value = supplier.get();
+					supplier = null;
+					materialized = true;
+					materializedCount.incrementAndGet();
+				}
+			}
+		}
+		return value;
+	}
+
+
+	/**
+	 * Check whether the value has already been computed.
+	 *
+	 * @return true if the value has been computed
+	 */
+	public boolean isMaterialized() {
+		return materialized;
+	}
+
+
+	/**
+	 * Get the number of supplier-backed lazy values that have been created.
+	 *
+	 * @return number of lazy values
+	 */
+	public static int getCreatedCount() {
+		return createdCount.get();
+	}
+
+
+	/**
+	 * Get the number of supplier-backed lazy values whose value has been computed.
+	 *
+	 * @return number of materialized lazy values
+	 */
+	public static int getMaterializedCount() {
+		return materializedCount.get();
+	}
+
+
+	/**
+	 * Get the number of supplier-backed lazy values whose value has not been computed (yet).
+	 *
+	 * @return number of lazy values that have never been materialized
+	 */
+	public static int getUnmaterializedCount() {
+		return createdCount.get() - materializedCount.get();
+	}
+
+
+	/**
+	 * Reset the counters.
+	 */
+	public static void resetStats() {
+		createdCount.set(0);
+		materializedCount.set(0);
+	}
+
+
+	@Override
+	public int describeContents() {
+		return 0;
+	}
+
+
+	@Override
+	public void writeToParcel(Parcel dest, int flags) {
+		dest.writeValue(get());
+	}
+
+
+	public static final Creator<LazyValue<?>> CREATOR = new Creator<LazyValue<?>>() {
+		@Override
+		public LazyValue<?> createFromParcel(Parcel source) {
+			return new LazyValue<>(source.readValue(LazyValue.class.getClassLoader()));
+		}
+
+		@Override
+		public LazyValue<?>[] newArray(int size) {
+			return new LazyValue<?>[size];
+		}
+	};
+
+}
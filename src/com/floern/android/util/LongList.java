@@ -0,0 +1,124 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of <code>long</code> values without boxing.
+ * <p>
+ * The growth and bounds logic is shared with {@link IntList} in {@link PrimitiveLists}, both classes are kept
+ * symmetric otherwise.
+ *
+ * @author Floern
+ * @see BundleBuilder#putLongList(String, LongList)
+ * @see BundleReader#getLongList(android.os.Bundle, String)
+ */
+public class LongList {
+
+	private long[] values;
+
+	private int size;
+
+
+	/**
+	 * Create an empty LongList.
+	 */
+	public LongList() {
+		this(PrimitiveLists.DEFAULT_CAPACITY);
+	}
+
+
+	/**
+	 * Create an empty LongList with the given initial capacity.
+	 *
+	 * @param capacity initial capacity
+	 */
+	public LongList(int capacity) {
+		values = new long[capacity];
+	}
+
+
+	private LongList(long[] values, int size) {
+		this.values = values;
+		this.size = size;
+	}
+
+
+	/**
+	 * Create a LongList backed by the given array, without copying it.
+	 *
+	 * @param values a long array
+	 * @return a LongList containing all values of the array
+	 */
+	public static LongList wrap(long[] values) {
+		return new LongList(values, values.length);
+	}
+
+
+	/**
+	 * Appends a value to the end of the list.
+	 *
+	 * @param value a long
+	 */
+	public void add(long value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, PrimitiveLists.grownCapacity(size));
+		}
+		values[size++] = value;
+	}
+
+
+	/**
+	 * Returns the value at the given index.
+	 *
+	 * @param index an index
+	 * @return the value
+	 */
+	public long get(int index) {
+		PrimitiveLists.checkIndex(index, size);
+		return values[index];
+	}
+
+
+	/**
+	 * Replaces the value at the given index.
+	 *
+	 * @param index an index
+	 * @param value a long
+	 */
+	public void set(int index, long value) {
+		PrimitiveLists.checkIndex(index, size);
+		values[index] = value;
+	}
+
+
+	/**
+	 * Returns the number of values in this list.
+	 *
+	 * @return the number of values
+	 */
+	public int size() {
+		return size;
+	}
+
+
+	/**
+	 * Removes all values from this list.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+
+	/**
+	 * Returns a new array containing all values of this list.
+	 *
+	 * @return a long array
+	 */
+	public long[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parcelable container for a model object that is marshalled by a {@link ParcelCodec}.
+ * The object is kept as is while the Bundle is not parceled.
+ *
+ * @param <T> the model type
+ * @author Floern
+ */
+public final class ModelValue<T> implements Parcelable {
+
+	/** codec instances by class name, shared by all unmarshalled values */
+	private static final ConcurrentHashMap<String, ParcelCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+	/** codec classes that have been checked to be instantiable when unmarshalling */
+	private static final ConcurrentHashMap<Class<?>, Boolean> CHECKED_CODECS = new ConcurrentHashMap<>();
+
+	private final T value;
+
+	private final ParcelCodec<T> codec;
+
+
+	ModelValue(T value, ParcelCodec<T> codec) {
+		if (codec == null) {
+			throw new NullPointerException("codec must not be null");
+		}
+		checkCodec(codec.getClass());
+		this.value = value;
+		this.codec = codec;
+	}
+
+
+	/**
+	 * Check that a codec can be recreated by its class name when the value is unmarshalled, e.g. after process death,
+	 * rather than failing only then.
+	 *
+	 * @throws IllegalArgumentException if the codec class is not a named public class with a public no-argument
+	 *         constructor
+	 */
+	static void checkCodec(Class<?> codecClass) {
+		if (CHECKED_CODECS.containsKey(codecClass)) {
+			return;
+		}
+		int modifiers = codecClass.getModifiers();
+		if (codecClass.isAnonymousClass() || codecClass.isLocalClass() || codecClass.isSynthetic()
+				|| (codecClass.isMemberClass() && !Modifier.isStatic(modifiers))) {
+			throw new IllegalArgumentException("ParcelCodec " + codecClass.getName()
+					+ " must be a top level or static nested class to be recreated when unmarshalling");
+		}
+		if (!Modifier.isPublic(modifiers) || Modifier.isAbstract(modifiers)) {
+			throw new IllegalArgumentException("ParcelCodec " + codecClass.getName()
+					+ " must be a public, non-abstract class to be recreated when unmarshalling");
+		}
+		try {
+			codecClass.getConstructor();
+		}
+		catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("ParcelCodec " + codecClass.getName()
+					+ " must have a public no-argument constructor to be recreated when unmarshalling", e);
+		}
+		CHECKED_CODECS.put(codecClass, Boolean.TRUE);
+	}
+
+
+	/**
+	 * Get the model object.
+	 *
+	 * @return the model object, or null
+	 */
+	public T getValue() {
+		return value;
+	}
+
+
+	@Override
+	public int describeContents() {
+		return 0;
+	}
+
+
+	@Override
+	public void writeToParcel(Parcel dest, int flags) {
+		dest.writeString(codec.getClass().getName());
+		if (value == null) {
+			dest.writeInt(0);
+		}
+		else {
+			dest.writeInt(1);
+			codec.write(value, dest);
+		}
+	}
+
+
+	private static ParcelCodec<?> getCodec(String className) {
+		ParcelCodec<?> codec = CODECS.get(className);
+		if (codec == null) {
+			try {
+				codec = (ParcelCodec<?>) Class.forName(className, true, ModelValue.class.getClassLoader()).newInstance();
+			}
+			catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
+				throw new IllegalStateException("ParcelCodec " + className + " cannot be instantiated", e);
+			}
+			CODECS.putIfAbsent(className, codec);
+		}
+		return codec;
+	}
+
+
+	public static final Creator<ModelValue<?>> CREATOR = new Creator<ModelValue<?>>() {
+		@Override
+		@SuppressWarnings("unchecked")
+		public ModelValue<?> createFromParcel(Parcel source) {
+			ParcelCodec<Object> codec = (ParcelCodec<Object>) getCodec(source.readString());
+			Object value = source.readInt() != 0 ? codec.read(source) : null;
+			return new ModelValue<>(value, codec);
+		}
+
+		@Override
+		public ModelValue<?>[] newArray(int size) {
+			return new ModelValue<?>[size];
+		}
+	};
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.os.Parcel;
+
+/**
+ * Writes and reads a model object directly to and from a <code>Parcel</code>, as a fast alternative to
+ * <code>Serializable</code>.
+ * <p>
+ * Implementations must be stateless and provide a public no-argument constructor, they are instantiated by class name
+ * when a model value is unmarshalled.
+ * <p>
+ * Codecs are written by hand. This library does not ship an annotation processor to generate them, nor a benchmark
+ * against <code>Serializable</code>, the speedup depends on the model and should be measured in the app.
+ *
+ * @param <T> the model type
+ * @author Floern
+ * @see BundleBuilder#putModel(String, Object, ParcelCodec)
+ * @see BundleReader#getModel(android.os.Bundle, String)
+ */
+public interface ParcelCodec<T> {
+
+	/**
+	 * Write a value into the Parcel.
+	 *
+	 * @param value the value, never null
+	 * @param dest the Parcel
+	 */
+	void write(T value, Parcel dest);
+
+
+	/**
+	 * Read a value from the Parcel, in the same order as it has been written by {@link #write(Object, Parcel)}.
+	 *
+	 * @param source the Parcel
+	 * @return the value
+	 */
+	T read(Parcel source);
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.os.Bundle;
+import android.os.Parcel;
+import android.util.SparseArray;
+
+import java.util.List;
+
+/**
+ * Estimates the number of bytes a value occupies when written into a <code>Parcel</code> as part of a <code>Bundle</code>.
+ * <p>
+ * The estimates follow the layout of <code>Parcel.writeValue()</code>: a 4 byte type tag followed by the payload, where
+ * every item is padded to 4 bytes. Values without a fixed layout (Parcelables, Serializables, Lists, ...) can only be
+ * determined with a dry run using {@link #measure(Object)}.<br>
+ * Short, char and float arrays have no type tag of their own before API level 33, they are written as Serializables.
+ *
+ * @author Floern
+ */
+final class ParcelSizeEstimator {
+
+	/** size of a type tag or an int in a Parcel */
+	static final int INT_SIZE = 4;
+
+	/** size of a Bundle's header: length, magic and number of entries */
+	static final int BUNDLE_HEADER_SIZE = 3 * INT_SIZE;
+
+	/** size of any value that fits into a single int (boolean, byte, char, short, int, float) */
+	static final int PRIMITIVE_32_SIZE = INT_SIZE + INT_SIZE;
+
+	/** size of any value that needs two ints (long, double) */
+	static final int PRIMITIVE_64_SIZE = INT_SIZE + 2 * INT_SIZE;
+
+	/** rough size assumed for values without a fixed layout if they are not measured */
+	static final int OPAQUE_SIZE = 64;
+
+	/** size of the stream header and class descriptor of a primitive array written by an ObjectOutputStream */
+	private static final int SERIALIZED_ARRAY_OVERHEAD = 27;
+
+
+	private ParcelSizeEstimator() {
+	}
+
+
+	/**
+	 * Size of a String payload, without type tag.
+	 */
+	static int sizeOfStringPayload(String value) {
+		if (value == null) {
+			return INT_SIZE;
+		}
+		// length + UTF-16 chars including the null terminator
+		return INT_SIZE + pad((value.length() + 1) * 2);
+	}
+
+
+	static int sizeOfKey(String key) {
+		return sizeOfStringPayload(key);
+	}
+
+
+	static int sizeOf(String value) {
+		return INT_SIZE + sizeOfStringPayload(value);
+	}
+
+
+	static int sizeOf(CharSequence value) {
+		if (value == null || value instanceof String) {
+			return sizeOf((String) value);
+		}
+		// kind + text, spans are not taken into account
+		return INT_SIZE + INT_SIZE + sizeOfStringPayload(value.toString());
+	}
+
+
+	static int sizeOf(boolean[] value) {
+		return value == null ? 2 * INT_SIZE : 2 * INT_SIZE + value.length * INT_SIZE;
+	}
+
+
+	static int sizeOf(byte[] value) {
+		return value == null ? 2 * INT_SIZE : 2 * INT_SIZE + pad(value.length);
+	}
+
+
+	static int sizeOf(short[] value) {
+		return value == null ? 2 * INT_SIZE : sizeOfSerializedArray(value, value.length * 2);
+	}
+
+
+	static int sizeOf(char[] value) {
+		return value == null ? 2 * INT_SIZE : sizeOfSerializedArray(value, value.length * 2);
+	}
+
+
+	static int sizeOf(int[] value) {
+		return value == null ? 2 * INT_SIZE : 2 * INT_SIZE + value.length * INT_SIZE;
+	}
+
+
+	static int sizeOf(long[] value) {
+		return value == null ? 2 * INT_SIZE : 2 * INT_SIZE + value.length * 2 * INT_SIZE;
+	}
+
+
+	static int sizeOf(float[] value) {
+		return value == null ? 2 * INT_SIZE : sizeOfSerializedArray(value, value.length * 4);
+	}
+
+
+	static int sizeOf(double[] value) {
+		return value == null ? 2 * INT_SIZE : 2 * INT_SIZE + value.length * 2 * INT_SIZE;
+	}
+
+
+	/**
+	 * Size of a primitive array written as a Serializable: type tag, class name and the serialized bytes.
+	 */
+	private static int sizeOfSerializedArray(Object array, int payloadSize) {
+		return INT_SIZE + sizeOfStringPayload(array.getClass().getName())
+				+ INT_SIZE + pad(SERIALIZED_ARRAY_OVERHEAD + payloadSize);
+	}
+
+
+	static int sizeOf(String[] value) {
+		if (value == null) {
+			return 2 * INT_SIZE;
+		}
+		int size = 2 * INT_SIZE;
+		for (String item : value) {
+			size += sizeOfStringPayload(item);
+		}
+		return size;
+	}
+
+
+	static int sizeOf(CharSequence[] value) {
+		if (value == null) {
+			return 2 * INT_SIZE;
+		}
+		int size = 2 * INT_SIZE;
+		for (CharSequence item : value) {
+			// kind + text, spans are not taken into account
+			size += INT_SIZE + sizeOfStringPayload(item == null ? null : item.toString());
+		}
+		return size;
+	}
+
+
+	/**
+	 * Estimate the size of an arbitrary value without marshalling it.
+	 * Parcelables and Serializables are accounted with a rough constant size.
+	 *
+	 * @param value any value supported by <code>Parcel.writeValue()</code>
+	 * @return estimated size in bytes, including the type tag
+	 */
+	static int estimate(Object value) {
+		if (value == null) {
+			return INT_SIZE;
+		}
+		if (value instanceof String) {
+			return sizeOf((String) value);
+		}
+		if (value instanceof Integer || value instanceof Boolean || value instanceof Byte || value instanceof Character
+				|| value instanceof Short || value instanceof Float) {
+			return PRIMITIVE_32_SIZE;
+		}
+		if (value instanceof Long || value instanceof Double) {
+			return PRIMITIVE_64_SIZE;
+		}
+		if (value instanceof CharSequence) {
+			return sizeOf((CharSequence) value);
+		}
+		if (value instanceof Bundle) {
+			return INT_SIZE + estimate((Bundle) value);
+		}
+		if (value instanceof List) {
+			int size = 2 * INT_SIZE;
+			for (Object item : (List<?>) value) {
+				size += estimate(item);
+			}
+			return size;
+		}
+		if (value instanceof SparseArray) {
+			SparseArray<?> array = (SparseArray<?>) value;
+			int size = 2 * INT_SIZE;
+			for (int i = 0; i < array.size(); ++i) {
+				size += INT_SIZE + estimate(array.valueAt(i));
+			}
+			return size;
+		}
+		if (value instanceof Object[]) {
+			if (value instanceof String[]) {
+				return sizeOf((String[]) value);
+			}
+			if (value instanceof CharSequence[]) {
+				return sizeOf((CharSequence[]) value);
+			}
+			return 2 * INT_SIZE + ((Object[]) value).length * OPAQUE_SIZE;
+		}
+		if (value instanceof boolean[]) {
+			return sizeOf((boolean[]) value);
+		}
+		if (value instanceof byte[]) {
+			return sizeOf((byte[]) value);
+		}
+		if (value instanceof short[]) {
+			return sizeOf((short[]) value);
+		}
+		if (value instanceof char[]) {
+			return sizeOf((char[]) value);
+		}
+		if (value instanceof int[]) {
+			return sizeOf((int[]) value);
+		}
+		if (value instanceof long[]) {
+			return sizeOf((long[]) value);
+		}
+		if (value instanceof float[]) {
+			return sizeOf((float[]) value);
+		}
+		if (value instanceof double[]) {
+			return sizeOf((double[]) value);
+		}
+		return OPAQUE_SIZE;
+	}
+
+
+	/**
+	 * Estimate the size of a Bundle without marshalling it.
+	 *
+	 * @param bundle a Bundle
+	 * @return estimated size in bytes
+	 */
+	static int estimate(Bundle bundle) {
+		int size = BUNDLE_HEADER_SIZE;
+		for (String key : bundle.keySet()) {
+			size += sizeOfKey(key) + estimate(bundle.get(key));
+		}
+		return size;
+	}
+
+
+	/**
+	 * Measure the exact size of a value by writing it into a temporary Parcel.
+	 *
+	 * @param value any value supported by <code>Parcel.writeValue()</code>
+	 * @return size in bytes, including the type tag
+	 */
+	static int measure(Object value) {
+		Parcel parcel = Parcel.obtain();
+		try {
+			parcel.writeValue(value);
+			return parcel.dataSize();
+		}
+		finally {
+			parcel.recycle();
+		}
+	}
+
+
+	/**
+	 * Measure the exact size of a Bundle by writing it into a temporary Parcel.
+	 *
+	 * @param bundle a Bundle
+	 * @return size in bytes
+	 */
+	static int measure(Bundle bundle) {
+		Parcel parcel = Parcel.obtain();
+		try {
+			parcel.writeBundle(bundle);
+			return parcel.dataSize();
+		}
+		finally {
+			parcel.recycle();
+		}
+	}
+
+
+	private static int pad(int size) {
+		return (size + 3) & ~3;
+	}
+
+}
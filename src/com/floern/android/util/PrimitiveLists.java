@@ -0,0 +1,45 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+/**
+ * Growth and bounds logic shared by the primitive lists {@link IntList} and {@link LongList}, which only differ in their
+ * element type.
+ *
+ * @author Floern
+ */
+final class PrimitiveLists {
+
+	static final int DEFAULT_CAPACITY = 10;
+
+
+	private PrimitiveLists() {
+	}
+
+
+	/**
+	 * Get the capacity to grow a full backing array to.
+	 *
+	 * @param size the current size, equal to the current capacity
+	 * @return the new capacity
+	 */
+	static int grownCapacity(int size) {
+		return Math.max(DEFAULT_CAPACITY, size + (size >> 1));
+	}
+
+
+	/**
+	 * Check that an index refers to a value of the list.
+	 *
+	 * @param index an index
+	 * @param size the size of the list
+	 * @throws IndexOutOfBoundsException if the index is negative or not less than the size
+	 */
+	static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+		}
+	}
+
+}
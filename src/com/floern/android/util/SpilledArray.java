@@ -0,0 +1,433 @@
+/*
+ * Floern, dev@floern.com, 2016, MIT Licence
+ */
+package com.floern.android.util;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.ParcelFileDescriptor;
+import android.os.Parcelable;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A handle to a primitive array that has been written out of band to a <code>SharedMemory</code> region (API level 27+)
+ * or to an unlinked, memory-mapped temporary file. Only the handle is stored in a Bundle, parceling it passes a file
+ * descriptor instead of copying the payload.
+ * <p>
+ * A handle is reference counted, the memory is freed as soon as the last reference has been released with
+ * {@link #release()}. A handle received through a Parcel holds its own reference.
+ * <p>
+ * The system rejects file descriptors in the saved instance state and in Intent extras. This includes Fragment
+ * arguments, which are part of the saved state. Spilled values are only meant for in-process hand-over and for binder
+ * IPC through AIDL or a <code>Messenger</code>, e.g. <code>Message.setData()</code>.
+ *
+ * @author Floern
+ * @see BundleBuilder#setSpillThreshold(int, File)
+ * @see BundleReader
+ */
+public final class SpilledArray implements Parcelable {
+
+	public static final int TYPE_BYTE = 1;
+	public static final int TYPE_SHORT = 2;
+	public static final int TYPE_CHAR = 3;
+	public static final int TYPE_INT = 4;
+	public static final int TYPE_LONG = 5;
+	public static final int TYPE_FLOAT = 6;
+	public static final int TYPE_DOUBLE = 7;
+
+	private static final int BACKING_SHARED_MEMORY = 1;
+	private static final int BACKING_FILE = 2;
+
+	private final int type;
+
+	private final int length;
+
+	private final SharedMemory sharedMemory;
+
+	private final ParcelFileDescriptor fileDescriptor;
+
+	private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+	private ByteBuffer mapping;
+
+
+	private SpilledArray(int type, int length, SharedMemory sharedMemory, ParcelFileDescriptor fileDescriptor) {
+		this.type = type;
+		this.length = length;
+		this.sharedMemory = sharedMemory;
+		this.fileDescriptor = fileDescriptor;
+	}
+
+
+	/**
+	 * Write a primitive array out of band.
+	 *
+	 * @param array a primitive array matching the type
+	 * @param type one of the <code>TYPE_*</code> constants
+	 * @param tempDirectory directory for the temporary file, used below API level 27
+	 * @return a handle holding one reference
+	 * @throws IOException if the memory could not be allocated or written
+	 */
+	static SpilledArray create(Object array, int type, int length, File tempDirectory) throws IOException {
+		long byteSize = (long) length * elementSize(type);
+		if (byteSize > Integer.MAX_VALUE) {
+			throw new IOException("array too large: " + byteSize + " bytes");
+		}
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+			return createInSharedMemory(array, type, length, (int) byteSize);
+		}
+
+		File file = File.createTempFile("spill", ".bin", tempDirectory);
+		try {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				ByteBuffer target = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, byteSize);
+				write(array, type, target);
+			}
+			finally {
+				randomAccessFile.close();
+			}
+			ParcelFileDescriptor fileDescriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+			return new SpilledArray(type, length, null, fileDescriptor);
+		}
+		finally {
+			// the open descriptor keeps the data alive, the file is reclaimed once it is closed
+			file.delete();
+		}
+	}
+
+
+	@TargetApi(Build.VERSION_CODES.O_MR1)
+	private static SpilledArray createInSharedMemory(Object array, int type, int length, int byteSize) throws IOException {
+		try {
+			SharedMemory sharedMemory = SharedMemory.create("BundleBuilder spill", Math.max(byteSize, 1));
+			ByteBuffer target = sharedMemory.mapReadWrite();
+			try {
+				write(array, type, target);
+			}
+			finally {
+				SharedMemory.unmap(target);
+			}
+			sharedMemory.setProtect(OsConstants.PROT_READ);
+			return new SpilledArray(type, length, sharedMemory, null);
+		}
+		catch (ErrnoException e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	private static void write(Object array, int type, ByteBuffer target) {
+		target.order(ByteOrder.nativeOrder());
+		switch (type) {
+			case TYPE_BYTE:
+				target.put((byte[]) array);
+				break;
+			case TYPE_SHORT:
+				target.asShortBuffer().put((short[]) array);
+				break;
+			case TYPE_CHAR:
+				target.asCharBuffer().put((char[]) array);
+				break;
+			case TYPE_INT:
+				target.asIntBuffer().put((int[]) array);
+				break;
+			case TYPE_LONG:
+				target.asLongBuffer().put((long[]) array);
+				break;
+			case TYPE_FLOAT:
+				target.asFloatBuffer().put((float[]) array);
+				break;
+			case TYPE_DOUBLE:
+				target.asDoubleBuffer().put((double[]) array);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown type: " + type);
+		}
+	}
+
+
+	static int elementSize(int type) {
+		switch (type) {
+			case TYPE_BYTE:
+				return 1;
+			case TYPE_SHORT:
+			case TYPE_CHAR:
+				return 2;
+			case TYPE_INT:
+			case TYPE_FLOAT:
+				return 4;
+			case TYPE_LONG:
+			case TYPE_DOUBLE:
+				return 8;
+			default:
+				throw new IllegalArgumentException("unknown type: " + type);
+		}
+	}
+
+
+	/**
+	 * Get the element type.
+	 *
+	 * @return one of the <code>TYPE_*</code> constants
+	 */
+	public int getType() {
+		return type;
+	}
+
+
+	/**
+	 * Get the number of elements.
+	 *
+	 * @return number of elements
+	 */
+	public int getLength() {
+		return length;
+	}
+
+
+	/**
+	 * Map the data into memory without copying it. The mapping is shared by all callers and stays valid until the last
+	 * reference has been released.
+	 *
+	 * @return a read-only ByteBuffer in native byte order
+	 * @throws IllegalStateException if the handle has already been released or the data could not be mapped
+	 */
+	public synchronized ByteBuffer map() {
+		if (referenceCount.get() <= 0) {
+			throw new IllegalStateException("SpilledArray has already been released");
+		}
+		if (mapping == null) {
+			try {
+				mapping = sharedMemory != null ? mapSharedMemory() : mapFile();
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("SpilledArray could not be mapped", e);
+			}
+		}
+		return mapping.duplicate().order(ByteOrder.nativeOrder());
+	}
+
+
+	@TargetApi(Build.VERSION_CODES.O_MR1)
+	private ByteBuffer mapSharedMemory() throws IOException {
+		try {
+			return sharedMemory.mapReadOnly();
+		}
+		catch (ErrnoException e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	private ByteBuffer mapFile() throws IOException {
+		// the stream does not own the descriptor, it must not be closed
+		FileChannel channel = new FileInputStream(fileDescriptor.getFileDescriptor()).getChannel();
+		return channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) length * elementSize(type)).asReadOnlyBuffer();
+	}
+
+
+	public ShortBuffer asShortBuffer() {
+		checkType(TYPE_SHORT);
+		return map().asShortBuffer();
+	}
+
+
+	public CharBuffer asCharBuffer() {
+		checkType(TYPE_CHAR);
+		return map().asCharBuffer();
+	}
+
+
+	public IntBuffer asIntBuffer() {
+		checkType(TYPE_INT);
+		return map().asIntBuffer();
+	}
+
+
+	public LongBuffer asLongBuffer() {
+		checkType(TYPE_LONG);
+		return map().asLongBuffer();
+	}
+
+
+	public FloatBuffer asFloatBuffer() {
+		checkType(TYPE_FLOAT);
+		return map().asFloatBuffer();
+	}
+
+
+	public DoubleBuffer asDoubleBuffer() {
+		checkType(TYPE_DOUBLE);
+		return map().asDoubleBuffer();
+	}
+
+
+	private void checkType(int expectedType) {
+		if (type != expectedType) {
+			throw new ClassCastException("SpilledArray of type " + type + " cannot be read as type " + expectedType);
+		}
+	}
+
+
+	/**
+	 * Acquire an additional reference.
+	 *
+	 * @return this handle
+	 */
+	public SpilledArray retain() {
+		if (referenceCount.getAndIncrement() <= 0) {
+			referenceCount.decrementAndGet();
+			throw new IllegalStateException("SpilledArray has already been released");
+		}
+		return this;
+	}
+
+
+	/**
+	 * Release a reference. The memory is freed when the last reference has been released.
+	 */
+	public void release() {
+		int remaining = referenceCount.decrementAndGet();
+		if (remaining < 0) {
+			referenceCount.incrementAndGet();
+			throw new IllegalStateException("SpilledArray has already been released");
+		}
+		if (remaining == 0) {
+			free();
+		}
+	}
+
+
+	private synchronized void free() {
+		if (sharedMemory != null) {
+			closeSharedMemory();
+		}
+		else {
+			try {
+				fileDescriptor.close();
+			}
+			catch (IOException ignored) {
+				// nothing left to clean up
+			}
+		}
+		mapping = null;
+	}
+
+
+	@TargetApi(Build.VERSION_CODES.O_MR1)
+	private void closeSharedMemory() {
+		if (mapping != null) {
+			SharedMemory.unmap(mapping);
+		}
+		sharedMemory.close();
+	}
+
+
+	/**
+	 * Acquire an additional reference to all SpilledArrays in a Bundle, for a copy of the Bundle that is released
+	 * independently.
+	 *
+	 * @param bundle a Bundle
+	 */
+	static void retainAll(Bundle bundle) {
+		for (String key : bundle.keySet()) {
+			Object value = bundle.get(key);
+			if (value instanceof SpilledArray) {
+				((SpilledArray) value).retain();
+			}
+		}
+	}
+
+
+	/**
+	 * Release the references held by all SpilledArrays in a Bundle.
+	 *
+	 * @param bundle a Bundle, or null
+	 */
+	public static void releaseAll(Bundle bundle) {
+		if (bundle == null) {
+			return;
+		}
+		for (String key : bundle.keySet()) {
+			Object value = bundle.get(key);
+			if (value instanceof SpilledArray) {
+				((SpilledArray) value).release();
+			}
+		}
+	}
+
+
+	@Override
+	public int describeContents() {
+		return CONTENTS_FILE_DESCRIPTOR;
+	}
+
+
+	@Override
+	public void writeToParcel(Parcel dest, int flags) {
+		// the handle stays valid for the sender, the descriptor must not be closed after writing
+		flags &= ~PARCELABLE_WRITE_RETURN_VALUE;
+		dest.writeInt(type);
+		dest.writeInt(length);
+		if (sharedMemory != null) {
+			dest.writeInt(BACKING_SHARED_MEMORY);
+			writeSharedMemory(dest, flags);
+		}
+		else {
+			dest.writeInt(BACKING_FILE);
+			fileDescriptor.writeToParcel(dest, flags);
+		}
+	}
+
+
+	@TargetApi(Build.VERSION_CODES.O_MR1)
+	private void writeSharedMemory(Parcel dest, int flags) {
+		sharedMemory.writeToParcel(dest, flags);
+	}
+
+
+	@TargetApi(Build.VERSION_CODES.O_MR1)
+	private static SharedMemory readSharedMemory(Parcel source) {
+		return SharedMemory.CREATOR.createFromParcel(source);
+	}
+
+
+	public static final Creator<SpilledArray> CREATOR = new Creator<SpilledArray>() {
+		@Override
+		public SpilledArray createFromParcel(Parcel source) {
+			int type = source.readInt();
+			int length = source.readInt();
+			if (source.readInt() == BACKING_SHARED_MEMORY) {
+				return new SpilledArray(type, length, readSharedMemory(source), null);
+			}
+			return new SpilledArray(type, length, null, ParcelFileDescriptor.CREATOR.createFromParcel(source));
+		}
+
+		@Override
+		public SpilledArray[] newArray(int size) {
+			return new SpilledArray[size];
+		}
+	};
+
+}